@@ -11,13 +11,24 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Px;
 import androidx.core.content.ContextCompat;
 import com.stfalcon.imageviewer.listeners.OnDismissListener;
+import com.stfalcon.imageviewer.listeners.OnFirstFrameListener;
 import com.stfalcon.imageviewer.listeners.OnImageChangeListener;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.DecodeConfigPolicy;
+import com.stfalcon.imageviewer.loader.ImageDataSource;
+import com.stfalcon.imageviewer.loader.ImageIdResolver;
 import com.stfalcon.imageviewer.loader.ImageLoader;
+import com.stfalcon.imageviewer.loader.ImageLoaderAdapter;
+import com.stfalcon.imageviewer.loader.PreviewResolver;
+import com.stfalcon.imageviewer.loader.RenditionResolver;
+import com.stfalcon.imageviewer.loader.TransitionViewResolver;
 import com.stfalcon.imageviewer.viewer.builder.BuilderData;
+import com.stfalcon.imageviewer.viewer.data.PagedImageList;
 import com.stfalcon.imageviewer.viewer.dialog.ImageViewerDialog;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class StfalconImageViewer<T> {
@@ -78,10 +89,29 @@ public class StfalconImageViewer<T> {
     }
   }
 
+  /**
+   * Replaces the images with the ones of a new data source if it is not empty, otherwise closes
+   * the viewer
+   */
+  public void updateImages(ImageDataSource<T> dataSource) {
+    updateImages(new PagedImageList<>(dataSource));
+  }
+
   public int currentPosition() {
     return dialog.getCurrentPosition();
   }
 
+  /**
+   * Returns the size of pixel memory held by the viewer: the images of the live pages and the
+   * transition view, the memory cache of prefetched images and the pool of bitmaps for reuse. The
+   * cache and the pool are shared by all of the viewers in the process.
+   *
+   * @return the size in bytes
+   */
+  public long getMemoryUsage() {
+    return dialog.getMemoryUsage();
+  }
+
   /**
    * Updates transition image view. Useful for a case when image position has changed and you want
    * to update the transition animation target.
@@ -103,10 +133,40 @@ public class StfalconImageViewer<T> {
     }
 
     public Builder(Context context, List<T> images, ImageLoader<T> imageLoader) {
+      this(context, images, new ImageLoaderAdapter<>(imageLoader));
+    }
+
+    /**
+     * Creates a builder which loads images with the {@link AsyncImageLoader}. Requests of pages
+     * which are recycled or rebound are cancelled and their late results are ignored.
+     */
+    public Builder(Context context, T[] images, AsyncImageLoader<T> imageLoader) {
+      this(context, new ArrayList<>(Arrays.asList(images)), imageLoader);
+    }
+
+    /**
+     * Creates a builder which loads images with the {@link AsyncImageLoader}. Requests of pages
+     * which are recycled or rebound are cancelled and their late results are ignored.
+     */
+    public Builder(Context context, List<T> images, AsyncImageLoader<T> imageLoader) {
       this.context = context;
       this.data = new BuilderData<>(images, imageLoader);
     }
 
+    public Builder(Context context, ImageDataSource<T> dataSource, ImageLoader<T> imageLoader) {
+      this(context, dataSource, new ImageLoaderAdapter<>(imageLoader));
+    }
+
+    /**
+     * Creates a builder which takes the images from the {@link ImageDataSource}. Only the images
+     * around the current position are loaded from it, so the viewer is opened at once regardless
+     * of the count of the images.
+     */
+    public Builder(Context context, ImageDataSource<T> dataSource,
+        AsyncImageLoader<T> imageLoader) {
+      this(context, new PagedImageList<>(dataSource), imageLoader);
+    }
+
     /**
      * Sets a position to start viewer from.
      *
@@ -244,6 +304,124 @@ public class StfalconImageViewer<T> {
       return this;
     }
 
+    /**
+     * Enables loading of images outside of the pages kept alive by the viewer, so they are ready
+     * by the time the user swipes to them. Works only with loaders which deliver images to the
+     * viewer, see {@link AsyncImageLoader}. Disabled by default.
+     *
+     * @param ahead count of images to prefetch in the direction the user swipes in
+     * @param behind count of images to prefetch in the opposite direction
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withPrefetch(int ahead, int behind) {
+      this.data.prefetchAhead = ahead;
+      this.data.prefetchBehind = behind;
+      return this;
+    }
+
+    /**
+     * Sets the count of recycled pages kept for reuse. Pages beyond it are dropped together with
+     * their views once the user swipes away from them. The default is 2, which is enough to swipe
+     * without creating new views.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withPagePoolSize(int size) {
+      this.data.pagePoolSize = size;
+      return this;
+    }
+
+    /**
+     * Sets the limit of pixel memory held by the viewer, see {@link #getMemoryUsage()}. The
+     * displayed images get the memory first and the rest of it is used for the prefetched images
+     * and the bitmaps kept for reuse. When the limit is tight, the viewer prefetches fewer images,
+     * then decodes images with {@link DecodeConfigPolicy#RGB_565_IF_OPAQUE}, and only then drops
+     * the pages which are not visible. The visible page is never dropped.
+     *
+     * @param bytes the limit in bytes
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withMemoryBudget(long bytes) {
+      this.data.memoryBudgetBytes = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the limit of pixel memory held by the viewer as a part of the memory class of the
+     * application, see {@link #withMemoryBudget(long)}.
+     *
+     * @param fraction the part of {@link android.app.ActivityManager#getMemoryClass()} from 0 to 1
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withMemoryBudgetFraction(float fraction) {
+      this.data.memoryBudgetFraction = fraction;
+      return this;
+    }
+
+    /**
+     * Sets an {@link Executor} to run blocking image work on instead of the pool owned by the
+     * library, see {@link com.stfalcon.imageviewer.loader.ImageRequest#getExecutor()}. The viewer
+     * still orders the work by priority and passes no more tasks to the executor at once than
+     * there are cores.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withExecutor(Executor executor) {
+      this.data.executor = executor;
+      return this;
+    }
+
+    /**
+     * Sets {@link PreviewResolver} which provides low-resolution previews of the images. A page
+     * displays the preview right away and replaces it with the full image once it is loaded,
+     * keeping the current zoom. The start page uses the transition image as its preview. Works
+     * only with {@link AsyncImageLoader}.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withPreviews(PreviewResolver<T> previewResolver) {
+      this.data.previewResolver = previewResolver;
+      return this;
+    }
+
+    /**
+     * Sets {@link ImageIdResolver} which provides stable IDs of the images. When the images are
+     * updated, pages of the images which are still in the list keep their views, loaded images and
+     * zoom, and the state of the pages is saved by the IDs instead of the positions. Without the
+     * IDs the images are matched with {@link Object#equals(Object)}.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withStableIds(ImageIdResolver<T> imageIdResolver) {
+      this.data.imageIdResolver = imageIdResolver;
+      return this;
+    }
+
+    /**
+     * Sets {@link RenditionResolver} which lists the sizes every image is available in. A page
+     * loads the smallest rendition which covers it, steps up to larger renditions as it is zoomed
+     * in and drops back once the zoom is reset. Works only with {@link AsyncImageLoader}.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withRenditions(RenditionResolver<T> renditionResolver) {
+      this.data.renditionResolver = renditionResolver;
+      return this;
+    }
+
+    /**
+     * Sets {@link DecodeConfigPolicy} which chooses the {@link android.graphics.Bitmap.Config} of
+     * every decoded image by its opacity and the API level, for example
+     * {@link DecodeConfigPolicy#RGB_565_IF_OPAQUE} or {@link DecodeConfigPolicy#HARDWARE}. It is
+     * passed to the loader with every request. Images are decoded to ARGB_8888 bitmaps by default.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withDecodeConfigPolicy(@NonNull DecodeConfigPolicy decodeConfigPolicy) {
+      this.data.decodeConfigPolicy = decodeConfigPolicy;
+      return this;
+    }
+
     /**
      * Sets a target {@link ImageView} to be part of transition when opening or closing the viewer/
      *
@@ -254,6 +432,33 @@ public class StfalconImageViewer<T> {
       return this;
     }
 
+    /**
+     * Sets {@link TransitionViewResolver} to find the view for the close transition of the
+     * current image when the viewer starts closing, instead of calling
+     * {@link StfalconImageViewer#updateTransitionImage(ImageView)} on every image change. The
+     * transition reuses the image displayed by the viewer, so nothing is loaded for it.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withTransitionResolver(TransitionViewResolver transitionViewResolver) {
+      this.data.transitionViewResolver = transitionViewResolver;
+      return this;
+    }
+
+    /**
+     * Delays the open transition until the image of the start position is loaded, so the image
+     * doesn't fly in blank. The viewer stays hidden meanwhile, and the transition starts anyway
+     * once the timeout passes. Loaders which don't report the loading completion, such as a plain
+     * {@link ImageLoader}, are not waited for.
+     *
+     * @param timeoutMillis the longest time to wait in milliseconds or 0 to start right away
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withDeferredOpen(long timeoutMillis) {
+      this.data.openTimeoutMillis = timeoutMillis;
+      return this;
+    }
+
     /**
      * Sets {@link OnImageChangeListener} for the viewer.
      *
@@ -274,6 +479,17 @@ public class StfalconImageViewer<T> {
       return this;
     }
 
+    /**
+     * Sets {@link OnFirstFrameListener} for the viewer. It is not invoked for a plain
+     * {@link ImageLoader}, which doesn't report the loading completion.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withFirstFrameListener(OnFirstFrameListener firstFrameListener) {
+      this.data.firstFrameListener = firstFrameListener;
+      return this;
+    }
+
     /**
      * Creates a {@link StfalconImageViewer} with the arguments supplied to this builder. It does
      * not show the dialog. This allows the user to do any extra processing before displaying the
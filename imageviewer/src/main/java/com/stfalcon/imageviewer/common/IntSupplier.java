@@ -0,0 +1,14 @@
+package com.stfalcon.imageviewer.common;
+
+import androidx.annotation.RestrictTo;
+
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public interface IntSupplier {
+
+  /**
+   * Gets a result.
+   *
+   * @return a result
+   */
+  int getAsInt();
+}
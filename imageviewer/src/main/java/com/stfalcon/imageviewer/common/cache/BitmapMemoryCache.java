@@ -0,0 +1,136 @@
+package com.stfalcon.imageviewer.common.cache;
+
+import android.graphics.Bitmap;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.collection.LruCache;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide LRU cache of decoded bitmaps bounded by the size of their pixel memory.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class BitmapMemoryCache {
+  private static final int DEFAULT_MEMORY_FRACTION = 8;
+
+  @Nullable
+  private static BitmapMemoryCache instance;
+
+  private final LruCache<ImageCacheKey, Bitmap> cache;
+  private final BitmapPool bitmapPool;
+  private final Map<Object, Integer> limits = new HashMap<>();
+  private volatile int maxBytes;
+
+  /**
+   * @param bitmapPool a pool which receives evicted bitmaps once they are not displayed anymore
+   */
+  public BitmapMemoryCache(int maxBytes, @NonNull BitmapPool bitmapPool) {
+    this.bitmapPool = bitmapPool;
+    this.maxBytes = maxBytes;
+    cache = new LruCache<ImageCacheKey, Bitmap>(maxBytes) {
+      @Override protected int sizeOf(@NonNull ImageCacheKey key, @NonNull Bitmap bitmap) {
+        return Bitmaps.getByteCount(bitmap);
+      }
+
+      @Override protected void entryRemoved(boolean evicted, @NonNull ImageCacheKey key,
+          @NonNull Bitmap oldValue, @Nullable Bitmap newValue) {
+        bitmapPool.release(oldValue);
+      }
+    };
+  }
+
+  /**
+   * @return the cache shared by all of the viewers in the process. Its size is an eighth of the
+   * memory available to the application.
+   */
+  @NonNull
+  public static synchronized BitmapMemoryCache getInstance() {
+    if (instance == null) {
+      long maxBytes = Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION;
+      instance = new BitmapMemoryCache((int) Math.min(Integer.MAX_VALUE, maxBytes),
+          BitmapPool.getInstance());
+    }
+    return instance;
+  }
+
+  @Nullable
+  public Bitmap get(@NonNull ImageCacheKey key) {
+    Bitmap bitmap = cache.get(key);
+    if (bitmap != null && bitmap.isRecycled()) {
+      //bitmaps provided by third-party loaders can be recycled by their owners at any time
+      cache.remove(key);
+      return null;
+    }
+    return bitmap;
+  }
+
+  public void put(@NonNull ImageCacheKey key, @NonNull Bitmap bitmap) {
+    if (!bitmap.isRecycled()) {
+      bitmapPool.acquire(bitmap);
+      cache.put(key, bitmap);
+      if (cache.size() > maxBytes) {
+        cache.trimToSize(maxBytes);
+      }
+    }
+  }
+
+  public void remove(@NonNull ImageCacheKey key) {
+    cache.remove(key);
+  }
+
+  public void clear() {
+    cache.evictAll();
+  }
+
+  public void trimToSize(int maxBytes) {
+    cache.trimToSize(maxBytes);
+  }
+
+  /**
+   * Limits the size of the cache on behalf of the owner, such as a viewer keeping to its memory
+   * budget. The cache keeps to the smallest of the limits of its owners, so they don't override
+   * each other, and gets back the size it was created with once all of them remove their limits.
+   */
+  public synchronized void setLimit(@NonNull Object owner, int maxBytes) {
+    limits.put(owner, Math.max(0, maxBytes));
+    applyLimits();
+  }
+
+  public synchronized void removeLimit(@NonNull Object owner) {
+    if (limits.remove(owner) != null) {
+      applyLimits();
+    }
+  }
+
+  private void applyLimits() {
+    int maxBytes = cache.maxSize();
+    for (int limit : limits.values()) {
+      maxBytes = Math.min(maxBytes, limit);
+    }
+    this.maxBytes = maxBytes;
+    cache.trimToSize(maxBytes);
+  }
+
+  /**
+   * @return the bitmaps held by the cache
+   */
+  @NonNull
+  public Collection<Bitmap> getBitmaps() {
+    return cache.snapshot().values();
+  }
+
+  /**
+   * @return the size of pixel memory held by the cache in bytes
+   */
+  public int size() {
+    return cache.size();
+  }
+
+  public int maxSize() {
+    return maxBytes;
+  }
+}
@@ -0,0 +1,268 @@
+package com.stfalcon.imageviewer.common.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build.VERSION;
+import android.util.SparseArray;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.tiles.TiledImageDrawable;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Process-wide pool of bitmaps which are not displayed anymore and can be reused by decoders
+ * through {@link android.graphics.BitmapFactory.Options#inBitmap}. Bitmaps are grouped in power of
+ * two size classes by their allocation size.
+ * <p>
+ * Only the bitmaps created by the library are pooled. Such bitmaps are registered with
+ * {@link #track(Bitmap)} and every holder of them (a view or a cache) takes a lease with
+ * {@link #acquire(Bitmap)}. A bitmap gets back to the pool once the last lease is released.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class BitmapPool {
+  private static final int DEFAULT_MEMORY_FRACTION = 16;
+  private static final int TEMP_STORAGE_SIZE = 16 * 1024;
+  private static final int MAX_TEMP_STORAGES = 4;
+
+  @Nullable
+  private static BitmapPool instance;
+
+  private final SparseArray<ArrayDeque<Bitmap>> sizeClasses = new SparseArray<>();
+  private final WeakHashMap<Bitmap, int[]> leases = new WeakHashMap<>();
+  private final ArrayDeque<byte[]> tempStorages = new ArrayDeque<>();
+  private final Map<Object, Long> limits = new HashMap<>();
+  private final long defaultMaxBytes;
+  private long maxBytes;
+  private long size;
+
+  public BitmapPool(long maxBytes) {
+    this.defaultMaxBytes = maxBytes;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the pool shared by all of the viewers in the process. Its size is a sixteenth of the
+   * memory available to the application.
+   */
+  @NonNull
+  public static synchronized BitmapPool getInstance() {
+    if (instance == null) {
+      instance = new BitmapPool(Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION);
+    }
+    return instance;
+  }
+
+  /**
+   * Removes a bitmap which is big enough to hold an image of the given size from the pool.
+   *
+   * @return a bitmap reconfigured to the given size and config or null if there is no such bitmap
+   */
+  @Nullable
+  public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+    if (!isReuseSupported()) {
+      return null;
+    }
+
+    int byteCount = width * height * getBytesPerPixel(config);
+    int sizeClass = getSizeClass(byteCount);
+    Bitmap bitmap = poll(sizeClass, byteCount);
+    if (bitmap == null) {
+      bitmap = poll(sizeClass + 1, byteCount);
+    }
+
+    if (bitmap != null) {
+      size -= Bitmaps.getByteCount(bitmap);
+      bitmap.reconfigure(width, height, config);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Puts a bitmap which is not used anymore to the pool. Bitmaps which can't be reused are
+   * ignored.
+   */
+  public synchronized void put(@NonNull Bitmap bitmap) {
+    int byteCount = Bitmaps.getByteCount(bitmap);
+    if (!isReuseSupported() || bitmap.isRecycled() || !bitmap.isMutable()
+        || byteCount > maxBytes) {
+      return;
+    }
+
+    int sizeClass = getSizeClass(byteCount);
+    ArrayDeque<Bitmap> bitmaps = sizeClasses.get(sizeClass);
+    if (bitmaps == null) {
+      bitmaps = new ArrayDeque<>();
+      sizeClasses.put(sizeClass, bitmaps);
+    }
+    bitmaps.push(bitmap);
+    size += byteCount;
+    trimToSize(maxBytes);
+  }
+
+  /**
+   * Registers a bitmap created by the library, so it can get back to the pool. The caller holds
+   * the first lease of the bitmap.
+   */
+  public synchronized void track(@NonNull Bitmap bitmap) {
+    leases.put(bitmap, new int[] {1});
+  }
+
+  public synchronized void acquire(@Nullable Bitmap bitmap) {
+    int[] count = bitmap != null ? leases.get(bitmap) : null;
+    if (count != null) {
+      count[0]++;
+    }
+  }
+
+  /**
+   * Releases a lease of the bitmap. The bitmap is put to the pool when it was the last lease.
+   */
+  public synchronized void release(@Nullable Bitmap bitmap) {
+    int[] count = bitmap != null ? leases.get(bitmap) : null;
+    if (count != null && --count[0] <= 0) {
+      leases.remove(bitmap);
+      put(bitmap);
+    }
+  }
+
+  /**
+   * Takes a lease of the bitmap displayed by the drawable. Tiled drawables hold their tiles with
+   * leases of their own.
+   */
+  public void acquire(@Nullable Drawable drawable) {
+    if (drawable instanceof TiledImageDrawable) {
+      ((TiledImageDrawable) drawable).acquire();
+    } else {
+      acquire(getBitmap(drawable));
+    }
+  }
+
+  public void release(@Nullable Drawable drawable) {
+    if (drawable instanceof TiledImageDrawable) {
+      ((TiledImageDrawable) drawable).release();
+    } else {
+      release(getBitmap(drawable));
+    }
+  }
+
+  /**
+   * @return a buffer to be used as {@link android.graphics.BitmapFactory.Options#inTempStorage}
+   */
+  @NonNull
+  public synchronized byte[] obtainTempStorage() {
+    byte[] storage = tempStorages.poll();
+    return storage != null ? storage : new byte[TEMP_STORAGE_SIZE];
+  }
+
+  public synchronized void releaseTempStorage(@NonNull byte[] storage) {
+    if (tempStorages.size() < MAX_TEMP_STORAGES) {
+      tempStorages.push(storage);
+    }
+  }
+
+  public synchronized void trimToSize(long maxBytes) {
+    for (int index = 0; size > maxBytes && index < sizeClasses.size(); index++) {
+      ArrayDeque<Bitmap> bitmaps = sizeClasses.valueAt(index);
+      while (size > maxBytes && !bitmaps.isEmpty()) {
+        size -= Bitmaps.getByteCount(bitmaps.pollLast());
+      }
+    }
+  }
+
+  /**
+   * Limits the size of the pool on behalf of the owner, see
+   * {@link BitmapMemoryCache#setLimit(Object, int)}.
+   */
+  public synchronized void setLimit(@NonNull Object owner, long maxBytes) {
+    limits.put(owner, Math.max(0, maxBytes));
+    applyLimits();
+  }
+
+  public synchronized void removeLimit(@NonNull Object owner) {
+    if (limits.remove(owner) != null) {
+      applyLimits();
+    }
+  }
+
+  private void applyLimits() {
+    maxBytes = defaultMaxBytes;
+    for (long limit : limits.values()) {
+      maxBytes = Math.min(maxBytes, limit);
+    }
+    trimToSize(maxBytes);
+  }
+
+  public synchronized long maxSize() {
+    return maxBytes;
+  }
+
+  /**
+   * @return the size the pool was created with, before it is limited by its owners
+   */
+  public long getDefaultMaxSize() {
+    return defaultMaxBytes;
+  }
+
+  public synchronized void clear() {
+    trimToSize(0);
+    tempStorages.clear();
+  }
+
+  /**
+   * @return the size of pixel memory held by the pooled bitmaps in bytes
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  @Nullable
+  private Bitmap poll(int sizeClass, int byteCount) {
+    ArrayDeque<Bitmap> bitmaps = sizeClasses.get(sizeClass);
+    if (bitmaps != null) {
+      Iterator<Bitmap> iterator = bitmaps.iterator();
+      while (iterator.hasNext()) {
+        Bitmap bitmap = iterator.next();
+        if (Bitmaps.getByteCount(bitmap) >= byteCount) {
+          iterator.remove();
+          return bitmap;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isReuseSupported() {
+    //before KitKat decoders could reuse only bitmaps of exactly the same size
+    return VERSION.SDK_INT >= 19;
+  }
+
+  private static int getSizeClass(int byteCount) {
+    return 32 - Integer.numberOfLeadingZeros(Math.max(byteCount - 1, 0));
+  }
+
+  private static int getBytesPerPixel(@NonNull Bitmap.Config config) {
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+      case RGBA_F16:
+        return 8;
+      default:
+        return 4;
+    }
+  }
+
+  @Nullable
+  private static Bitmap getBitmap(@Nullable Drawable drawable) {
+    return drawable instanceof BitmapDrawable ? ((BitmapDrawable) drawable).getBitmap() : null;
+  }
+}
@@ -0,0 +1,371 @@
+package com.stfalcon.imageviewer.common.cache;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Size-capped cache of downsampled renditions stored in the application cache directory. Entries
+ * keep raw pixels, so reading one back is a sequential memory-mapped read without any decoding.
+ * Access order is persisted in a journal, which allows to evict the least recently used entries
+ * across process restarts. The journal is read on the first use of the cache rather than when it
+ * is created, as it is created on the main thread, and it is rewritten once per a batch of reads
+ * and changes. Files which are missing from the journal are taken as the least recently used.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class DiskRenditionCache {
+  private static final String TAG = "DiskRenditionCache";
+  private static final String DIRECTORY_NAME = "stfalcon-imageviewer-renditions";
+  private static final String JOURNAL_NAME = "journal";
+  private static final String JOURNAL_TMP_NAME = "journal.tmp";
+  private static final String ENTRY_TMP_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x53495652;
+  private static final int HEADER_SIZE = 4 * Integer.SIZE / Byte.SIZE;
+  private static final int CONFIG_ARGB_8888 = 0;
+  private static final int CONFIG_RGB_565 = 1;
+  /**
+   * Count of reads and changes after which the journal is rewritten.
+   */
+  private static final int JOURNAL_REBUILD_OPERATIONS = 32;
+
+  @Nullable
+  private static DiskRenditionCache instance;
+
+  private final File directory;
+  private long maxBytes;
+  private long size;
+  private boolean isJournalRead;
+  private int operationsSinceJournalWrite;
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(0, 0.75f, true);
+
+  private DiskRenditionCache(@NonNull File directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the cache shared by all of the loaders in the process. Size cap of the existing cache
+   * is updated to the given value.
+   */
+  @NonNull
+  public static synchronized DiskRenditionCache getInstance(@NonNull Context context,
+      long maxBytes) {
+    if (instance == null) {
+      instance = new DiskRenditionCache(new File(context.getCacheDir(), DIRECTORY_NAME), maxBytes);
+    } else {
+      instance.setMaxBytes(maxBytes);
+    }
+    return instance;
+  }
+
+  /**
+   * Creates a file-name-safe key for the rendition of the source decoded for the given size.
+   *
+   * @param opaqueConfig config the rendition is stored in if the image is opaque
+   * @param translucentConfig config the rendition is stored in otherwise
+   */
+  @NonNull
+  public static String createKey(@NonNull String sourceKey, int width, int height,
+      @NonNull Bitmap.Config opaqueConfig, @NonNull Bitmap.Config translucentConfig) {
+    String key = sourceKey + '@' + width + 'x' + height + '/' + opaqueConfig + '/'
+        + translucentConfig;
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+      return String.format("%032x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException | IOException e) {
+      return Integer.toHexString(key.hashCode()) + Integer.toHexString(key.length());
+    }
+  }
+
+  /**
+   * Updates the size cap, the cache is trimmed to it on the next use if the journal is not read
+   * yet.
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    if (isJournalRead) {
+      trimToSize();
+    }
+  }
+
+  /**
+   * Reads the rendition stored for the key. The pixels are read outside of the lock, which guards
+   * only the entries and the journal, so reads don't wait for the writes of other renditions.
+   *
+   * @param bitmapPool a pool to take the bitmap for the rendition from
+   * @return a mutable bitmap with the stored pixels or null if there is no such rendition
+   */
+  @Nullable
+  public Bitmap get(@NonNull String key, @NonNull BitmapPool bitmapPool) {
+    synchronized (this) {
+      readJournalIfNeeded();
+      //reading the entry makes it the most recently used one
+      if (entries.get(key) == null) {
+        return null;
+      }
+      onJournalOperation();
+    }
+
+    Bitmap bitmap = read(key, bitmapPool);
+    if (bitmap == null) {
+      synchronized (this) {
+        remove(key);
+      }
+    }
+    return bitmap;
+  }
+
+  /**
+   * Stores pixels of the bitmap. Only software {@link Bitmap.Config#ARGB_8888} and
+   * {@link Bitmap.Config#RGB_565} bitmaps are supported, others are ignored. The pixels are
+   * written outside of the lock, so the bitmap should not be reused until the method returns.
+   */
+  public void put(@NonNull String key, @NonNull Bitmap bitmap) {
+    int configCode = toConfigCode(bitmap.getConfig());
+    if (configCode < 0 || bitmap.isRecycled()) {
+      return;
+    }
+
+    long length = HEADER_SIZE + (long) bitmap.getRowBytes() * bitmap.getHeight();
+    synchronized (this) {
+      readJournalIfNeeded();
+      if (length > maxBytes) {
+        return;
+      }
+    }
+
+    File tmp;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        return;
+      }
+      //concurrent writes of the same rendition don't share a file
+      tmp = File.createTempFile(key, ENTRY_TMP_SUFFIX, directory);
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to create rendition " + key, e);
+      return;
+    }
+
+    //the write is not synced, a torn entry is discarded by the size check when it is read
+    try (RandomAccessFile output = new RandomAccessFile(tmp, "rw")) {
+      MappedByteBuffer buffer = output.getChannel()
+          .map(FileChannel.MapMode.READ_WRITE, 0, length);
+      buffer.putInt(MAGIC)
+          .putInt(bitmap.getWidth())
+          .putInt(bitmap.getHeight())
+          .putInt(configCode);
+      bitmap.copyPixelsToBuffer(buffer);
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Unable to write rendition " + key, e);
+      //noinspection ResultOfMethodCallIgnored
+      tmp.delete();
+      return;
+    }
+
+    synchronized (this) {
+      if (!tmp.renameTo(new File(directory, key))) {
+        //noinspection ResultOfMethodCallIgnored
+        tmp.delete();
+        return;
+      }
+
+      Long previous = entries.put(key, length);
+      size += length - (previous != null ? previous : 0L);
+      trimToSize();
+      onJournalOperation();
+    }
+  }
+
+  public synchronized void clear() {
+    readJournalIfNeeded();
+    for (String key : entries.keySet()) {
+      //noinspection ResultOfMethodCallIgnored
+      new File(directory, key).delete();
+    }
+    entries.clear();
+    size = 0;
+    writeJournal();
+  }
+
+  /**
+   * @return the size of the stored renditions in bytes
+   */
+  public synchronized long size() {
+    readJournalIfNeeded();
+    return size;
+  }
+
+  @Nullable
+  private Bitmap read(@NonNull String key, @NonNull BitmapPool bitmapPool) {
+    Bitmap bitmap = null;
+    try (RandomAccessFile input = new RandomAccessFile(new File(directory, key), "r")) {
+      FileChannel channel = input.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC) {
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        Bitmap.Config config = toConfig(buffer.getInt());
+        if (config != null && width > 0 && height > 0) {
+          bitmap = bitmapPool.get(width, height, config);
+          if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+          }
+          if (buffer.remaining() >= bitmap.getRowBytes() * height) {
+            bitmap.copyPixelsFromBuffer(buffer);
+          } else {
+            bitmapPool.put(bitmap);
+            bitmap = null;
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Unable to read rendition " + key, e);
+    }
+    return bitmap;
+  }
+
+  private void remove(@NonNull String key) {
+    Long length = entries.remove(key);
+    if (length != null) {
+      size -= length;
+    }
+    //noinspection ResultOfMethodCallIgnored
+    new File(directory, key).delete();
+    onJournalOperation();
+  }
+
+  private void trimToSize() {
+    Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+    while (size > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      size -= eldest.getValue();
+      //noinspection ResultOfMethodCallIgnored
+      new File(directory, eldest.getKey()).delete();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Rewrites the journal once per {@link #JOURNAL_REBUILD_OPERATIONS} reads and changes.
+   */
+  private void onJournalOperation() {
+    if (++operationsSinceJournalWrite >= JOURNAL_REBUILD_OPERATIONS) {
+      writeJournal();
+    }
+  }
+
+  private void readJournalIfNeeded() {
+    if (!isJournalRead) {
+      isJournalRead = true;
+      readJournal();
+    }
+  }
+
+  /**
+   * Journal lists the entries from the least to the most recently used one, an entry per line.
+   * The entries stored after the last write of the journal are not listed in it, they are added
+   * before the listed ones.
+   */
+  private void readJournal() {
+    File journal = new File(directory, JOURNAL_NAME);
+    Set<String> listed = new LinkedHashSet<>();
+    if (journal.isFile()) {
+      try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+        String key;
+        while ((key = reader.readLine()) != null) {
+          if (!key.isEmpty()) {
+            listed.add(key);
+          }
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to read journal", e);
+      }
+    }
+
+    String[] names = directory.list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.endsWith(ENTRY_TMP_SUFFIX)) {
+          //left by a write which was interrupted
+          //noinspection ResultOfMethodCallIgnored
+          new File(directory, name).delete();
+        } else if (!name.equals(JOURNAL_NAME) && !listed.contains(name)) {
+          addEntry(name);
+        }
+      }
+    }
+    for (String key : listed) {
+      addEntry(key);
+    }
+    trimToSize();
+  }
+
+  private void addEntry(@NonNull String key) {
+    File file = new File(directory, key);
+    if (file.isFile()) {
+      entries.put(key, file.length());
+      size += file.length();
+    }
+  }
+
+  private void writeJournal() {
+    operationsSinceJournalWrite = 0;
+    if (!directory.isDirectory()) {
+      return;
+    }
+
+    File tmp = new File(directory, JOURNAL_TMP_NAME);
+    try (Writer writer = new FileWriter(tmp)) {
+      for (String key : entries.keySet()) {
+        writer.write(key);
+        writer.write('\n');
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write journal", e);
+      return;
+    }
+    //noinspection ResultOfMethodCallIgnored
+    tmp.renameTo(new File(directory, JOURNAL_NAME));
+  }
+
+  private static int toConfigCode(@Nullable Bitmap.Config config) {
+    if (config == Bitmap.Config.ARGB_8888) {
+      return CONFIG_ARGB_8888;
+    } else if (config == Bitmap.Config.RGB_565) {
+      return CONFIG_RGB_565;
+    }
+    return -1;
+  }
+
+  @Nullable
+  private static Bitmap.Config toConfig(int code) {
+    switch (code) {
+      case CONFIG_ARGB_8888:
+        return Bitmap.Config.ARGB_8888;
+      case CONFIG_RGB_565:
+        return Bitmap.Config.RGB_565;
+      default:
+        return null;
+    }
+  }
+}
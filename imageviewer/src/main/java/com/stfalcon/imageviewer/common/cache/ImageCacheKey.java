@@ -0,0 +1,66 @@
+package com.stfalcon.imageviewer.common.cache;
+
+import android.graphics.Bitmap;
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Identifies an image decoded for the certain target size and bitmap configs.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class ImageCacheKey {
+  @NonNull
+  private final Object image;
+  private final int width;
+  private final int height;
+  @NonNull
+  private final Bitmap.Config opaqueConfig;
+  @NonNull
+  private final Bitmap.Config translucentConfig;
+
+  /**
+   * @param opaqueConfig config the image is decoded to if it is opaque
+   * @param translucentConfig config the image is decoded to otherwise
+   */
+  public ImageCacheKey(@NonNull Object image, int width, int height,
+      @NonNull Bitmap.Config opaqueConfig, @NonNull Bitmap.Config translucentConfig) {
+    this.image = image;
+    this.width = width;
+    this.height = height;
+    this.opaqueConfig = opaqueConfig;
+    this.translucentConfig = translucentConfig;
+  }
+
+  @NonNull
+  public Object getImage() {
+    return image;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ImageCacheKey)) {
+      return false;
+    }
+    ImageCacheKey that = (ImageCacheKey) o;
+    return width == that.width && height == that.height && image.equals(that.image)
+        && opaqueConfig == that.opaqueConfig && translucentConfig == that.translucentConfig;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 31 * (31 * image.hashCode() + width) + height;
+    result = 31 * result + opaqueConfig.hashCode();
+    return 31 * result + translucentConfig.hashCode();
+  }
+}
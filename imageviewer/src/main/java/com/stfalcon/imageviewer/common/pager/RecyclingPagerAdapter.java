@@ -8,19 +8,32 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.collection.LongSparseArray;
 import androidx.viewpager.widget.PagerAdapter;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 import java.util.List;
 
 @RestrictTo(value = RestrictTo.Scope.LIBRARY)
 public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.ViewHolder>
     extends PagerAdapter {
-  private static final String STATE = RecyclingPagerAdapter.class.getSimpleName();
+  private static final String STATE_IDS = RecyclingPagerAdapter.class.getSimpleName() + ".ids";
+  private static final String STATE_VALUES =
+      RecyclingPagerAdapter.class.getSimpleName() + ".values";
   private static final int VIEW_TYPE_IMAGE = 0;
+  /**
+   * ID of an item which has no stable ID yet, the state of its view is not saved.
+   */
+  public static final long NO_ID = Long.MIN_VALUE;
+  /**
+   * Count of detached holders kept for reuse, the pager keeps up to 3 pages attached, so a
+   * couple of free holders are enough to swipe without creating new views.
+   */
+  public static final int DEFAULT_MAX_POOLED_HOLDERS = 2;
 
   private final SparseArray<RecycleCache> typeCaches = new SparseArray<>();
-  private SparseArray<Parcelable> savedStates = new SparseArray<>();
+  private final SparseArray<VH> attachedHolders = new SparseArray<>();
+  private LongSparseArray<Parcelable> savedStates = new LongSparseArray<>();
+  private int maxPooledHolders = DEFAULT_MAX_POOLED_HOLDERS;
 
   public abstract int getItemCount();
 
@@ -29,9 +42,25 @@ public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.Vie
 
   public abstract void onBindViewHolder(@NonNull VH holder, int position);
 
+  public void onViewRecycled(@NonNull VH holder) {
+  }
+
+  /**
+   * Called when a recycled holder doesn't fit in the pool and is dropped.
+   */
+  public void onViewDropped(@NonNull VH holder) {
+  }
+
+  @SuppressWarnings("unchecked")
   @Override public void destroyItem(@NonNull ViewGroup parent, int position, @NonNull Object item) {
     if (item instanceof ViewHolder) {
-      ((ViewHolder) item).detach(parent);
+      VH holder = (VH) item;
+      holder.detach(parent);
+      removeAttachedViewHolder(holder);
+      onViewRecycled(holder);
+      if (!getRecycleCache().put(holder)) {
+        onViewDropped(holder);
+      }
     }
   }
 
@@ -39,24 +68,55 @@ public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.Vie
     return getItemCount();
   }
 
+  @SuppressWarnings("unchecked")
   @Override public int getItemPosition(@NonNull Object item) {
+    if (!(item instanceof ViewHolder)) {
+      return POSITION_NONE;
+    }
+
+    VH holder = (VH) item;
+    int position = findItemPosition(holder);
+    if (position == POSITION_NONE || position == holder.getPosition()) {
+      return position == POSITION_NONE ? POSITION_NONE : POSITION_UNCHANGED;
+    }
+
+    //a holder which takes the position of another moved one is checked before or after it, so
+    //every holder ends up at its own position
+    removeAttachedViewHolder(holder);
+    holder.setPosition(position);
+    attachedHolders.put(position, holder);
+    return position;
+  }
+
+  /**
+   * Finds the position of the item bound to the holder after the data set is changed. The holder
+   * of an item which is still in the data set keeps its view and state.
+   *
+   * @return the new position of the item or {@link #POSITION_NONE} if it should be rebound
+   */
+  public int findItemPosition(@NonNull VH holder) {
     return POSITION_NONE;
   }
 
+  /**
+   * @return ID the saved state of the item view is stored by, or {@link #NO_ID}
+   */
+  public long getItemId(int position) {
+    return position;
+  }
+
   @SuppressWarnings("unchecked")
   @NonNull
   @Override
   public Object instantiateItem(@NonNull ViewGroup parent, int position) {
-    RecycleCache cache = typeCaches.get(VIEW_TYPE_IMAGE);
-    if (cache == null) {
-      cache = new RecycleCache(this);
-      typeCaches.put(VIEW_TYPE_IMAGE, cache);
-    }
-
-    ViewHolder holder = cache.getFreeViewHolder(parent, VIEW_TYPE_IMAGE);
+    VH holder = (VH) getRecycleCache().getFreeViewHolder(parent, VIEW_TYPE_IMAGE);
     holder.attach(parent, position);
-    onBindViewHolder((VH) holder, position);
-    holder.onRestoreInstanceState(savedStates.get(getItemId(position)));
+    attachedHolders.put(position, holder);
+    onBindViewHolder(holder, position);
+    long itemId = getItemId(position);
+    if (itemId != NO_ID) {
+      holder.onRestoreInstanceState(savedStates.get(itemId));
+    }
     return holder;
   }
 
@@ -68,11 +128,21 @@ public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.Vie
   @Override
   public Parcelable saveState() {
     for (ViewHolder viewHolder : getAttachedViewHolders()) {
-      savedStates.put(getItemId(viewHolder.getPosition()), viewHolder.onSaveInstanceState());
+      long itemId = getItemId(viewHolder.getPosition());
+      if (itemId != NO_ID) {
+        savedStates.put(itemId, viewHolder.onSaveInstanceState());
+      }
     }
 
+    long[] ids = new long[savedStates.size()];
+    Parcelable[] values = new Parcelable[savedStates.size()];
+    for (int index = 0; index < savedStates.size(); index++) {
+      ids[index] = savedStates.keyAt(index);
+      values[index] = savedStates.valueAt(index);
+    }
     Bundle state = new Bundle();
-    state.putSparseParcelableArray(STATE, savedStates);
+    state.putLongArray(STATE_IDS, ids);
+    state.putParcelableArray(STATE_VALUES, values);
     return state;
   }
 
@@ -81,41 +151,84 @@ public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.Vie
     if (state != null && state instanceof Bundle) {
       Bundle bundle = (Bundle) state;
       bundle.setClassLoader(loader);
-      if (bundle.containsKey(STATE)) {
-        savedStates = bundle.getSparseParcelableArray(STATE);
-      } else {
-        savedStates = new SparseArray<>();
+      savedStates = new LongSparseArray<>();
+      long[] ids = bundle.getLongArray(STATE_IDS);
+      Parcelable[] values = bundle.getParcelableArray(STATE_VALUES);
+      if (ids != null && values != null && ids.length == values.length) {
+        for (int index = 0; index < ids.length; index++) {
+          savedStates.put(ids[index], values[index]);
+        }
       }
     }
 
     super.restoreState(state, loader);
   }
 
-  private int getItemId(int position) {
-    return position;
+  /**
+   * @return the holder attached at the position or null if the page is not alive
+   */
+  @Nullable
+  public final VH getAttachedViewHolder(int position) {
+    return attachedHolders.get(position);
   }
 
-  private List<ViewHolder> getAttachedViewHolders() {
-    ArrayList<ViewHolder> attachedViewHolders = new ArrayList<>();
-    int size = typeCaches.size();
-    for (int index = 0; index < size; ++index) {
-      if (size != typeCaches.size()) {
-        throw new ConcurrentModificationException();
-      }
+  @NonNull
+  public final List<VH> getAttachedViewHolders() {
+    List<VH> holders = new ArrayList<>(attachedHolders.size());
+    for (int index = 0; index < attachedHolders.size(); index++) {
+      holders.add(attachedHolders.valueAt(index));
+    }
+    return holders;
+  }
 
-      for (ViewHolder holder : typeCaches.valueAt(index).getCaches()) {
-        if (holder.isAttached()) {
-          attachedViewHolders.add(holder);
-        }
+  /**
+   * Sets the count of detached holders kept for reuse, the extra ones are dropped right away.
+   */
+  public void setMaxPooledViewHolders(int count) {
+    maxPooledHolders = Math.max(0, count);
+    trimPool(maxPooledHolders);
+  }
+
+  /**
+   * Drops all of the detached holders, the pool is filled again as the pages are recycled.
+   */
+  public void clearPool() {
+    trimPool(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void trimPool(int maxSize) {
+    for (int index = 0; index < typeCaches.size(); index++) {
+      for (ViewHolder holder : typeCaches.valueAt(index).trim(maxSize)) {
+        onViewDropped((VH) holder);
       }
     }
+  }
+
+  private void removeAttachedViewHolder(@NonNull VH holder) {
+    int index = attachedHolders.indexOfKey(holder.getPosition());
+    if (index >= 0 && attachedHolders.valueAt(index) == holder) {
+      attachedHolders.removeAt(index);
+    }
+  }
 
-    return attachedViewHolders;
+  @NonNull
+  private RecycleCache getRecycleCache() {
+    RecycleCache cache = typeCaches.get(VIEW_TYPE_IMAGE);
+    if (cache == null) {
+      cache = new RecycleCache(this);
+      typeCaches.put(VIEW_TYPE_IMAGE, cache);
+    }
+    return cache;
   }
 
+  /**
+   * Pool of the detached holders of a view type bounded by the max pooled holders count of the
+   * adapter.
+   */
   private static final class RecycleCache {
     @NonNull
-    private final List<ViewHolder> caches = new ArrayList<>();
+    private final List<ViewHolder> freeHolders = new ArrayList<>();
     private final RecyclingPagerAdapter<?> adapter;
 
     public RecycleCache(@NonNull RecyclingPagerAdapter<?> adapter) {
@@ -124,24 +237,33 @@ public abstract class RecyclingPagerAdapter<VH extends RecyclingPagerAdapter.Vie
 
     @NonNull
     public final ViewHolder getFreeViewHolder(@NonNull ViewGroup parent, int viewType) {
-      int iterationsCount = 0;
-      ViewHolder viewHolder;
-      while (iterationsCount < caches.size()) {
-        viewHolder = caches.get(iterationsCount);
-        if (!viewHolder.isAttached) {
-          return viewHolder;
-        }
-        iterationsCount++;
+      if (!freeHolders.isEmpty()) {
+        return freeHolders.remove(freeHolders.size() - 1);
       }
+      return adapter.onCreateViewHolder(parent, viewType);
+    }
 
-      ViewHolder holder = adapter.onCreateViewHolder(parent, viewType);
-      caches.add(holder);
-      return holder;
+    /**
+     * @return false if the pool is full and the holder should be dropped
+     */
+    public final boolean put(@NonNull ViewHolder holder) {
+      if (freeHolders.size() >= adapter.maxPooledHolders) {
+        return false;
+      }
+      freeHolders.add(holder);
+      return true;
     }
 
+    /**
+     * @return the holders which were removed from the pool
+     */
     @NonNull
-    public final List<ViewHolder> getCaches() {
-      return caches;
+    public final List<ViewHolder> trim(int maxSize) {
+      List<ViewHolder> removed = new ArrayList<>();
+      while (freeHolders.size() > maxSize) {
+        removed.add(freeHolders.remove(freeHolders.size() - 1));
+      }
+      return removed;
     }
   }
 
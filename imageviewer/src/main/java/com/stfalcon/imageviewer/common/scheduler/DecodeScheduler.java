@@ -0,0 +1,220 @@
+package com.stfalcon.imageviewer.common.scheduler;
+
+import android.os.Process;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking image work on a bounded number of threads, the most important work first. Tasks
+ * with a lower priority value are started earlier, tasks with the same priority are started in the
+ * order they were submitted.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class DecodeScheduler {
+  private static final String TAG = "DecodeScheduler";
+  private static final String THREAD_NAME_PREFIX = "ImageViewer-decode-";
+
+  @Nullable
+  private static DecodeScheduler instance;
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final PriorityQueue<Task> queue = new PriorityQueue<>();
+  private int runningCount;
+  private long sequence;
+
+  /**
+   * @param executor an executor which runs the tasks once their turn comes
+   * @param maxConcurrency max count of tasks passed to the executor at the same time
+   */
+  public DecodeScheduler(@NonNull Executor executor, int maxConcurrency) {
+    this.executor = executor;
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+  }
+
+  /**
+   * @return the scheduler shared by all of the viewers in the process, it owns a thread per core
+   */
+  @NonNull
+  public static synchronized DecodeScheduler getInstance() {
+    if (instance == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      int concurrency = getDefaultConcurrency();
+      instance = new DecodeScheduler(Executors.newFixedThreadPool(concurrency, runnable -> {
+        Thread thread = new Thread(() -> {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runnable.run();
+        }, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }), concurrency);
+    }
+    return instance;
+  }
+
+  public static int getDefaultConcurrency() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates an executor which submits tasks to this scheduler with the given priority. Tasks which
+   * are still waiting for their turn are dropped when the executor is cancelled.
+   */
+  @NonNull
+  public PriorityExecutor newExecutor(int priority) {
+    return new PriorityExecutor(priority);
+  }
+
+  /**
+   * Passes the most important of the waiting tasks to the executor while there are free slots.
+   * The executor is called without holding the lock, as it is allowed to run tasks in place. A
+   * task rejected by the executor is dropped and told about it, its slot is given to the next one.
+   */
+  private void drain() {
+    boolean isRejected;
+    do {
+      List<Task> ready = new ArrayList<>();
+      synchronized (this) {
+        while (runningCount < maxConcurrency && !queue.isEmpty()) {
+          Task task = queue.poll();
+          task.owner.pending.remove(task);
+          runningCount++;
+          ready.add(task);
+        }
+      }
+
+      isRejected = false;
+      for (Task task : ready) {
+        try {
+          executor.execute(task);
+        } catch (RuntimeException e) {
+          //drain runs on the threads submitting and finishing tasks, so the error is not thrown
+          synchronized (this) {
+            runningCount--;
+          }
+          task.onRejected(e);
+          isRejected = true;
+        }
+      }
+    } while (isRejected);
+  }
+
+  private void onTaskFinished() {
+    synchronized (this) {
+      runningCount--;
+    }
+    drain();
+  }
+
+  /**
+   * Task which reports its failure when the executor of the scheduler rejects it. Other tasks are
+   * dropped with a warning.
+   */
+  public interface RejectableTask extends Runnable {
+    void onRejected(@NonNull RuntimeException error);
+  }
+
+  public final class PriorityExecutor implements Executor {
+    private int priority;
+    private final List<Task> pending = new ArrayList<>();
+    private boolean isCancelled;
+
+    private PriorityExecutor(int priority) {
+      this.priority = priority;
+    }
+
+    @Override public void execute(@NonNull Runnable command) {
+      synchronized (DecodeScheduler.this) {
+        if (isCancelled) {
+          return;
+        }
+        Task task = new Task(command, priority, sequence++, this);
+        pending.add(task);
+        queue.add(task);
+      }
+      drain();
+    }
+
+    /**
+     * Moves the waiting tasks of the executor and the ones submitted later ahead of the tasks with
+     * a priority value between the new and the current one. Lowering the priority is ignored.
+     */
+    public void raisePriority(int priority) {
+      synchronized (DecodeScheduler.this) {
+        if (priority >= this.priority) {
+          return;
+        }
+
+        this.priority = priority;
+        for (Task task : pending) {
+          //the queue doesn't reorder tasks in place, so they are added again
+          queue.remove(task);
+          task.priority = priority;
+          queue.add(task);
+        }
+      }
+    }
+
+    public void cancel() {
+      synchronized (DecodeScheduler.this) {
+        isCancelled = true;
+        for (Task task : pending) {
+          queue.remove(task);
+        }
+        pending.clear();
+      }
+    }
+
+    public boolean isCancelled() {
+      synchronized (DecodeScheduler.this) {
+        return isCancelled;
+      }
+    }
+  }
+
+  private final class Task implements Runnable, Comparable<Task> {
+    private final Runnable command;
+    private int priority;
+    private final long sequence;
+    private final PriorityExecutor owner;
+
+    Task(@NonNull Runnable command, int priority, long sequence,
+        @NonNull PriorityExecutor owner) {
+      this.command = command;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.owner = owner;
+    }
+
+    @Override public void run() {
+      try {
+        command.run();
+      } finally {
+        onTaskFinished();
+      }
+    }
+
+    void onRejected(@NonNull RuntimeException error) {
+      if (command instanceof RejectableTask) {
+        ((RejectableTask) command).onRejected(error);
+      } else {
+        Log.w(TAG, "Task rejected by the executor", error);
+      }
+    }
+
+    @Override public int compareTo(@NonNull Task other) {
+      if (priority != other.priority) {
+        return priority < other.priority ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.stfalcon.imageviewer.common.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.loader.TileSource;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * {@link TileSource} which decodes tiles from regions of an encoded image, every level is decoded
+ * with a twice bigger sample size. {@link BitmapRegionDecoder} decodes a single region at a time,
+ * so the source keeps several decoders of the same image to decode tiles in parallel.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class RegionTileSource implements TileSource {
+  public static final int TILE_SIZE = 256;
+
+  private final Opener opener;
+  private final BitmapPool bitmapPool;
+  private final int maxDecoders;
+  private final int width;
+  private final int height;
+  private final int levelCount;
+  private final ArrayDeque<BitmapRegionDecoder> idleDecoders = new ArrayDeque<>();
+  private int decoderCount;
+  private boolean isRecycled;
+
+  /**
+   * @param opener creates decoders of the image, it is called at most maxDecoders times
+   * @param maxDecoders max count of tiles decoded at the same time
+   */
+  public RegionTileSource(@NonNull Opener opener, @NonNull BitmapPool bitmapPool,
+      int maxDecoders) throws IOException {
+    this.opener = opener;
+    this.bitmapPool = bitmapPool;
+    this.maxDecoders = Math.max(1, maxDecoders);
+
+    BitmapRegionDecoder decoder = opener.open();
+    this.width = decoder.getWidth();
+    this.height = decoder.getHeight();
+    idleDecoders.add(decoder);
+    decoderCount = 1;
+
+    int levelCount = 1;
+    while (Math.max(width, height) >> (levelCount - 1) > TILE_SIZE) {
+      levelCount++;
+    }
+    this.levelCount = levelCount;
+  }
+
+  @Override public int getWidth() {
+    return width;
+  }
+
+  @Override public int getHeight() {
+    return height;
+  }
+
+  @Override public int getTileSize() {
+    return TILE_SIZE;
+  }
+
+  @Override public int getLevelCount() {
+    return levelCount;
+  }
+
+  /**
+   * @return the decoded tile or null if the source was closed in the meantime
+   */
+  @Nullable
+  @Override public Bitmap getTile(int level, int column, int row) throws IOException {
+    int tileExtent = TILE_SIZE << level;
+    Rect region = new Rect(column * tileExtent, row * tileExtent,
+        Math.min(width, (column + 1) * tileExtent), Math.min(height, (row + 1) * tileExtent));
+    return decodeRegion(region, 1 << level);
+  }
+
+  @Nullable
+  private Bitmap decodeRegion(@NonNull Rect region, int sampleSize) throws IOException {
+    BitmapRegionDecoder decoder = obtainDecoder();
+    if (decoder == null) {
+      return null;
+    }
+
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = sampleSize;
+    options.inMutable = true;
+    options.inTempStorage = bitmapPool.obtainTempStorage();
+    try {
+      options.inBitmap = bitmapPool.get(
+          (region.width() + sampleSize - 1) / sampleSize,
+          (region.height() + sampleSize - 1) / sampleSize,
+          options.inPreferredConfig);
+      if (options.inBitmap == null) {
+        return decoder.decodeRegion(region, options);
+      }
+
+      try {
+        return decoder.decodeRegion(region, options);
+      } catch (IllegalArgumentException e) {
+        //the pooled bitmap doesn't fit the region, so it is decoded into a new one
+        bitmapPool.put(options.inBitmap);
+        options.inBitmap = null;
+        return decoder.decodeRegion(region, options);
+      }
+    } finally {
+      bitmapPool.releaseTempStorage(options.inTempStorage);
+      releaseDecoder(decoder);
+    }
+  }
+
+  /**
+   * Frees the native memory of the decoders. Tiles which are being decoded at the moment free
+   * their decoders once they are done.
+   */
+  @Override public void close() {
+    synchronized (idleDecoders) {
+      isRecycled = true;
+      for (BitmapRegionDecoder decoder : idleDecoders) {
+        decoder.recycle();
+      }
+      idleDecoders.clear();
+      idleDecoders.notifyAll();
+    }
+  }
+
+  @Nullable
+  private BitmapRegionDecoder obtainDecoder() throws IOException {
+    synchronized (idleDecoders) {
+      while (!isRecycled && idleDecoders.isEmpty() && decoderCount >= maxDecoders) {
+        try {
+          idleDecoders.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+      }
+
+      if (isRecycled) {
+        return null;
+      }
+      if (!idleDecoders.isEmpty()) {
+        return idleDecoders.poll();
+      }
+      decoderCount++;
+    }
+
+    try {
+      return opener.open();
+    } catch (IOException | RuntimeException e) {
+      synchronized (idleDecoders) {
+        decoderCount--;
+        idleDecoders.notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  private void releaseDecoder(@NonNull BitmapRegionDecoder decoder) {
+    synchronized (idleDecoders) {
+      if (isRecycled) {
+        decoder.recycle();
+      } else {
+        idleDecoders.add(decoder);
+        idleDecoders.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Interface definition for a callback to be invoked when a new decoder of the image is needed.
+   */
+  public interface Opener {
+    @NonNull
+    BitmapRegionDecoder open() throws IOException;
+  }
+}
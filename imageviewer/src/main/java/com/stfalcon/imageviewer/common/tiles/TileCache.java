@@ -0,0 +1,55 @@
+package com.stfalcon.imageviewer.common.tiles;
+
+import android.graphics.Bitmap;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.collection.LruCache;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+
+/**
+ * LRU cache of the tiles of a single image bounded by the size of their pixel memory, so the
+ * memory taken by a tiled image doesn't depend on its size. Evicted tiles are put to the pool.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class TileCache {
+  private final LruCache<Long, Bitmap> tiles;
+
+  public TileCache(int maxBytes, @NonNull BitmapPool bitmapPool) {
+    tiles = new LruCache<Long, Bitmap>(Math.max(1, maxBytes)) {
+      @Override protected int sizeOf(@NonNull Long key, @NonNull Bitmap tile) {
+        return Bitmaps.getByteCount(tile);
+      }
+
+      @Override protected void entryRemoved(boolean evicted, @NonNull Long key,
+          @NonNull Bitmap oldValue, @Nullable Bitmap newValue) {
+        bitmapPool.put(oldValue);
+      }
+    };
+  }
+
+  public static long createKey(int level, int column, int row) {
+    return ((long) level << 56) | ((long) column << 28) | row;
+  }
+
+  @Nullable
+  public Bitmap get(long key) {
+    return tiles.get(key);
+  }
+
+  public void put(long key, @NonNull Bitmap tile) {
+    tiles.put(key, tile);
+  }
+
+  public void clear() {
+    tiles.evictAll();
+  }
+
+  /**
+   * @return the size of pixel memory of the cached tiles
+   */
+  public int size() {
+    return tiles.size();
+  }
+}
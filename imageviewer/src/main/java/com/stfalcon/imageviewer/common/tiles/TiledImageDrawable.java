@@ -0,0 +1,343 @@
+package com.stfalcon.imageviewer.common.tiles;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.collection.LongSparseArray;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import com.stfalcon.imageviewer.loader.TileSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drawable of a large image which is displayed from a low-resolution base layer and the tiles of
+ * the area visible on the canvas. Tiles are loaded from the level of the {@link TileSource} which
+ * matches the current zoom, in parallel and only once they are visible. The least recently drawn
+ * tiles are evicted when the tiles cache is full.
+ *
+ * <p>Its intrinsic size is the size of the full image. The drawable and its copies created with
+ * {@link #getConstantState()} share the decoded tiles, which are freed with the last lease taken
+ * by {@link #acquire()}.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class TiledImageDrawable extends Drawable {
+  private final TileState state;
+  private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Rect clipBounds = new Rect();
+  private final RectF destination = new RectF();
+  private final Matrix matrix = new Matrix();
+  private final float[] matrixValues = new float[9];
+
+  /**
+   * Creates a drawable with a single lease, which is taken over by the caller.
+   *
+   * @param base the whole image at a low resolution
+   * @param source source of the tiles, it is closed when the tiles are freed
+   * @param executor executor for the tiles loading, it is cancelled when the tiles are freed
+   * @param maxTileBytes size cap of the tiles cache
+   */
+  public TiledImageDrawable(@NonNull Bitmap base, @NonNull TileSource source,
+      @NonNull DecodeScheduler.PriorityExecutor executor, @NonNull BitmapPool bitmapPool,
+      int maxTileBytes) {
+    this(new TileState(base, source, executor, bitmapPool, maxTileBytes));
+  }
+
+  private TiledImageDrawable(@NonNull TileState state) {
+    this.state = state;
+  }
+
+  /**
+   * Takes a lease of the shared tiles, the drawable is redrawn as the new tiles are decoded while
+   * it is held.
+   */
+  public void acquire() {
+    state.acquire(this);
+  }
+
+  /**
+   * Releases the lease taken by {@link #acquire()}, the tiles are freed with the last one.
+   */
+  public void release() {
+    state.release(this);
+  }
+
+  /**
+   * @return the size of pixel memory held by the base image and the cached tiles
+   */
+  public int getByteCount() {
+    return Bitmaps.getByteCount(state.base) + state.tiles.size();
+  }
+
+  @Override public void draw(@NonNull Canvas canvas) {
+    Rect bounds = getBounds();
+    if (state.isRecycled || bounds.isEmpty()) {
+      return;
+    }
+
+    canvas.drawBitmap(state.base, null, bounds, paint);
+    if (!canvas.getClipBounds(clipBounds) || !clipBounds.intersect(bounds)) {
+      return;
+    }
+
+    //the canvas is already transformed by the image matrix of the view, so its scale is the
+    //count of screen pixels per drawable unit
+    canvas.getMatrix(matrix);
+    matrix.getValues(matrixValues);
+    float boundsScale = bounds.width() / (float) state.width;
+    float screenScale = boundsScale
+        * (float) Math.hypot(matrixValues[Matrix.MSCALE_X], matrixValues[Matrix.MSKEW_Y]);
+    if (screenScale * state.width <= state.base.getWidth()) {
+      //the base layer has enough pixels for the current zoom
+      state.cancelInvisibleTiles();
+      return;
+    }
+
+    int level = 0;
+    while (level + 1 < state.source.getLevelCount() && (2 << level) * screenScale <= 1f) {
+      level++;
+    }
+
+    int tileExtent = state.source.getTileSize() << level;
+    int left = Math.max(0, (int) ((clipBounds.left - bounds.left) / boundsScale));
+    int top = Math.max(0, (int) ((clipBounds.top - bounds.top) / boundsScale));
+    int right = Math.min(state.width,
+        (int) Math.ceil((clipBounds.right - bounds.left) / boundsScale));
+    int bottom = Math.min(state.height,
+        (int) Math.ceil((clipBounds.bottom - bounds.top) / boundsScale));
+    for (int row = top / tileExtent; row * tileExtent < bottom; row++) {
+      for (int column = left / tileExtent; column * tileExtent < right; column++) {
+        Bitmap tile = state.getTile(level, column, row);
+        if (tile == null) {
+          continue;
+        }
+
+        destination.set(
+            bounds.left + column * tileExtent * boundsScale,
+            bounds.top + row * tileExtent * boundsScale,
+            bounds.left + Math.min(state.width, (column + 1) * tileExtent) * boundsScale,
+            bounds.top + Math.min(state.height, (row + 1) * tileExtent) * boundsScale);
+        canvas.drawBitmap(tile, null, destination, paint);
+      }
+    }
+    state.cancelInvisibleTiles();
+  }
+
+  @Override public int getIntrinsicWidth() {
+    return state.width;
+  }
+
+  @Override public int getIntrinsicHeight() {
+    return state.height;
+  }
+
+  @Override public void setAlpha(int alpha) {
+    paint.setAlpha(alpha);
+    invalidateSelf();
+  }
+
+  @Override public int getAlpha() {
+    return paint.getAlpha();
+  }
+
+  @Override public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    paint.setColorFilter(colorFilter);
+    invalidateSelf();
+  }
+
+  @Override public int getOpacity() {
+    return state.base.hasAlpha() || paint.getAlpha() < 255
+        ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE;
+  }
+
+  @NonNull
+  @Override public ConstantState getConstantState() {
+    return state;
+  }
+
+  private static final class TileState extends ConstantState {
+    private final Bitmap base;
+    private final TileSource source;
+    private final DecodeScheduler.PriorityExecutor executor;
+    private final BitmapPool bitmapPool;
+    private final int width;
+    private final int height;
+    private final TileCache tiles;
+    private final LongSparseArray<TileTask> pendingTiles = new LongSparseArray<>();
+    private final Set<Long> failedTiles = new HashSet<>();
+    private final List<TiledImageDrawable> drawables = new ArrayList<>();
+    private int leaseCount = 1;
+    private int frame;
+    private volatile boolean isRecycled;
+
+    TileState(@NonNull Bitmap base, @NonNull TileSource source,
+        @NonNull DecodeScheduler.PriorityExecutor executor, @NonNull BitmapPool bitmapPool,
+        int maxTileBytes) {
+      this.base = base;
+      this.source = source;
+      this.executor = executor;
+      this.bitmapPool = bitmapPool;
+      this.width = source.getWidth();
+      this.height = source.getHeight();
+      this.tiles = new TileCache(maxTileBytes, bitmapPool);
+    }
+
+    @NonNull
+    @Override public Drawable newDrawable() {
+      return new TiledImageDrawable(this);
+    }
+
+    @NonNull
+    @Override public Drawable newDrawable(@Nullable Resources res) {
+      return newDrawable();
+    }
+
+    @Override public int getChangingConfigurations() {
+      return 0;
+    }
+
+    void acquire(@NonNull TiledImageDrawable drawable) {
+      synchronized (this) {
+        leaseCount++;
+      }
+      MainThread.run(() -> drawables.add(drawable));
+    }
+
+    void release(@NonNull TiledImageDrawable drawable) {
+      boolean isLastLease;
+      synchronized (this) {
+        isLastLease = --leaseCount == 0;
+      }
+      MainThread.run(() -> {
+        drawables.remove(drawable);
+        if (isLastLease) {
+          recycle();
+        }
+      });
+    }
+
+    /**
+     * @return the loaded tile or null if it is not loaded yet, in which case its loading is
+     * started
+     */
+    @Nullable
+    Bitmap getTile(int level, int column, int row) {
+      long key = TileCache.createKey(level, column, row);
+      Bitmap tile = tiles.get(key);
+      if (tile != null || failedTiles.contains(key)) {
+        return tile;
+      }
+
+      TileTask task = pendingTiles.get(key);
+      if (task == null) {
+        task = new TileTask(key, level, column, row);
+        pendingTiles.put(key, task);
+        executor.execute(task);
+      }
+      task.frame = frame;
+      return null;
+    }
+
+    /**
+     * Cancels loading of the tiles which were not requested during the last drawing.
+     */
+    void cancelInvisibleTiles() {
+      for (int index = pendingTiles.size() - 1; index >= 0; index--) {
+        TileTask task = pendingTiles.valueAt(index);
+        if (task.frame != frame) {
+          task.isCancelled = true;
+          pendingTiles.removeAt(index);
+        }
+      }
+      frame++;
+    }
+
+    private void onTileDecoded(@NonNull TileTask task, @Nullable Bitmap tile) {
+      if (pendingTiles.get(task.key) == task) {
+        pendingTiles.remove(task.key);
+      }
+
+      if (isRecycled) {
+        if (tile != null) {
+          bitmapPool.put(tile);
+        }
+        return;
+      }
+      if (tile == null) {
+        failedTiles.add(task.key);
+        return;
+      }
+
+      //tiles of cancelled tasks are cached too, as they may become visible again soon
+      tiles.put(task.key, tile);
+      if (!task.isCancelled) {
+        for (TiledImageDrawable drawable : drawables) {
+          drawable.invalidateSelf();
+        }
+      }
+    }
+
+    private void recycle() {
+      isRecycled = true;
+      executor.cancel();
+      for (int index = 0; index < pendingTiles.size(); index++) {
+        pendingTiles.valueAt(index).isCancelled = true;
+      }
+      pendingTiles.clear();
+      tiles.clear();
+      source.close();
+      bitmapPool.put(base);
+    }
+
+    private final class TileTask implements DecodeScheduler.RejectableTask {
+      private final long key;
+      private final int level;
+      private final int column;
+      private final int row;
+      private volatile boolean isCancelled;
+      private int frame;
+
+      TileTask(long key, int level, int column, int row) {
+        this.key = key;
+        this.level = level;
+        this.column = column;
+        this.row = row;
+      }
+
+      @Override public void run() {
+        if (isCancelled || isRecycled) {
+          return;
+        }
+
+        Bitmap tile;
+        try {
+          tile = source.getTile(level, column, row);
+        } catch (IOException | RuntimeException e) {
+          tile = null;
+        }
+
+        Bitmap decoded = tile;
+        MainThread.post(() -> onTileDecoded(this, decoded));
+      }
+
+      @Override public void onRejected(@NonNull RuntimeException error) {
+        MainThread.post(() -> onTileDecoded(this, null));
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.stfalcon.imageviewer.common.tools;
+
+import android.graphics.Bitmap;
+import android.os.Build.VERSION;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class Bitmaps {
+  /**
+   * Calculates the largest power of two sample size which keeps both sides of the decoded image
+   * not smaller than the requested ones.
+   */
+  public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+    int inSampleSize = 1;
+    if (reqWidth <= 0 || reqHeight <= 0) {
+      return inSampleSize;
+    }
+
+    while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+      inSampleSize *= 2;
+    }
+    return inSampleSize;
+  }
+
+  /**
+   * @return true if the pixels of bitmaps of the config are stored in graphics memory only, so
+   * they can't be accessed by software
+   */
+  public static boolean isHardware(@Nullable Bitmap.Config config) {
+    return VERSION.SDK_INT >= 26 && config == Bitmap.Config.HARDWARE;
+  }
+
+  /**
+   * @return a copy of the software bitmap in graphics memory or the bitmap itself if it can't be
+   * copied
+   */
+  @NonNull
+  public static Bitmap copyToHardware(@NonNull Bitmap bitmap) {
+    if (VERSION.SDK_INT < 26 || isHardware(bitmap.getConfig())) {
+      return bitmap;
+    }
+
+    Bitmap copy = bitmap.copy(Bitmap.Config.HARDWARE, false);
+    return copy != null ? copy : bitmap;
+  }
+
+  /**
+   * @return the size of memory used to store the bitmap pixels
+   */
+  public static int getByteCount(@NonNull Bitmap bitmap) {
+    if (bitmap.isRecycled()) {
+      return 0;
+    }
+    return VERSION.SDK_INT >= 19 ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+  }
+}
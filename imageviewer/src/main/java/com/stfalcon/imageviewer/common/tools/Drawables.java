@@ -0,0 +1,78 @@
+package com.stfalcon.imageviewer.common.tools;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.TransitionDrawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class Drawables {
+  /**
+   * Creates a drawable which displays the same image as the given one, so it can be displayed by
+   * another view. Pixels are shared through the {@link Drawable.ConstantState} of the drawable,
+   * only the drawables which have no such state are drawn into a snapshot bitmap once.
+   *
+   * @param width width of the view which displays the drawable, the size of the snapshot
+   * @param height height of the view which displays the drawable
+   * @return the new drawable or null if the drawable has nothing to display
+   */
+  @Nullable
+  public static Drawable share(@NonNull Drawable drawable, @NonNull Resources resources,
+      int width, int height) {
+    if (drawable instanceof TransitionDrawable) {
+      //loaders cross-fade from a placeholder to the image, a new drawable would start from
+      //the placeholder again
+      TransitionDrawable transition = (TransitionDrawable) drawable;
+      int count = transition.getNumberOfLayers();
+      return count > 0
+          ? share(transition.getDrawable(count - 1), resources, width, height) : null;
+    }
+
+    if (drawable instanceof BitmapDrawable) {
+      //the bitmap is shared rather than copied, so hardware bitmaps are supported too
+      Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+      return bitmap != null && !bitmap.isRecycled() ? new BitmapDrawable(resources, bitmap) : null;
+    }
+
+    Drawable.ConstantState state = drawable.getConstantState();
+    if (state != null) {
+      return state.newDrawable(resources);
+    }
+
+    Bitmap snapshot = snapshot(drawable, width, height);
+    return snapshot != null ? new BitmapDrawable(resources, snapshot) : null;
+  }
+
+  /**
+   * Draws the drawable at its intrinsic size, scaled down to fit the given size.
+   */
+  @Nullable
+  private static Bitmap snapshot(@NonNull Drawable drawable, int maxWidth, int maxHeight) {
+    int width = drawable.getIntrinsicWidth();
+    int height = drawable.getIntrinsicHeight();
+    if (width <= 0 || height <= 0) {
+      width = maxWidth;
+      height = maxHeight;
+    } else if (maxWidth > 0 && maxHeight > 0) {
+      float scale = Math.min(1f, Math.min(maxWidth / (float) width, maxHeight / (float) height));
+      width = Math.max(1, Math.round(width * scale));
+      height = Math.max(1, Math.round(height * scale));
+    }
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+
+    Bitmap snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    Rect bounds = drawable.copyBounds();
+    drawable.setBounds(0, 0, width, height);
+    drawable.draw(new Canvas(snapshot));
+    drawable.setBounds(bounds);
+    return snapshot;
+  }
+}
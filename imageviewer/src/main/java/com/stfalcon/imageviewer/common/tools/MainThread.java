@@ -0,0 +1,35 @@
+package com.stfalcon.imageviewer.common.tools;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class MainThread {
+  private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+
+  public static boolean isCurrent() {
+    return Looper.myLooper() == Looper.getMainLooper();
+  }
+
+  public static void run(@NonNull Runnable action) {
+    if (isCurrent()) {
+      action.run();
+    } else {
+      HANDLER.post(action);
+    }
+  }
+
+  public static void post(@NonNull Runnable action) {
+    HANDLER.post(action);
+  }
+
+  public static void postDelayed(@NonNull Runnable action, long delayMillis) {
+    HANDLER.postDelayed(action, delayMillis);
+  }
+
+  public static void cancel(@NonNull Runnable action) {
+    HANDLER.removeCallbacks(action);
+  }
+}
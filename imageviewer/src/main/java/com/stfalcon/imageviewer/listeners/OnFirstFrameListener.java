@@ -0,0 +1,9 @@
+package com.stfalcon.imageviewer.listeners;
+
+/**
+ * Interface definition for a callback to be invoked when the first image of the viewer was
+ * decoded, with the time passed since the viewer was opened.
+ */
+public interface OnFirstFrameListener {
+  void onFirstFrame(long elapsedMillis);
+}
@@ -0,0 +1,23 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Base class for loaders which deliver images asynchronously and can cancel the work they started.
+ * Unlike {@link ImageLoader} the result is not set into a view directly but handed to an
+ * {@link ImageTarget}, so the viewer is able to drop results which arrive too late.
+ */
+public abstract class AsyncImageLoader<T> {
+  /**
+   * Fires every time when image object should be displayed. Implementations should not block the
+   * calling (main) thread.
+   *
+   * @param request image data from which image should be loaded along with the size of the area
+   * it is going to be displayed in
+   * @param target a target which should receive the loaded image
+   * @return a handle which the viewer uses to cancel the request when it is no longer needed
+   */
+  @NonNull
+  public abstract ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target);
+}
@@ -0,0 +1,150 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link DecodeBackend} based on {@link BitmapFactory}. It reads images through a
+ * {@link java.io.FileDescriptor} and decodes them into the pixel memory of pooled bitmaps.
+ */
+public final class BitmapFactoryBackend implements DecodeBackend {
+  public static final String NAME = "BitmapFactory";
+
+  private final Context context;
+  private final BitmapPool bitmapPool;
+
+  public BitmapFactoryBackend(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+    this.bitmapPool = BitmapPool.getInstance();
+  }
+
+  @NonNull
+  @Override public String getName() {
+    return NAME;
+  }
+
+  @Override public boolean canDecode(@NonNull String mimeType) {
+    //the format was recognized while reading the image bounds, which is done by BitmapFactory too
+    return true;
+  }
+
+  @Nullable
+  @Override public Bitmap decode(@NonNull ImageSource source, int width, int height,
+      int sampleSize, @NonNull Bitmap.Config config) throws IOException {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inTempStorage = bitmapPool.obtainTempStorage();
+    try {
+      options.inSampleSize = sampleSize;
+      options.inPreferredConfig = config;
+      if (Bitmaps.isHardware(config)) {
+        //hardware bitmaps are immutable, so they can't reuse pooled memory
+        return decode(source, options);
+      }
+
+      options.inMutable = true;
+      options.inBitmap = bitmapPool.get(divideRoundingUp(width, sampleSize),
+          divideRoundingUp(height, sampleSize), config);
+      if (options.inBitmap == null) {
+        return decode(source, options);
+      }
+
+      try {
+        return decode(source, options);
+      } catch (IllegalArgumentException e) {
+        //the pooled bitmap doesn't fit the image, so it is decoded into a new one
+        bitmapPool.put(options.inBitmap);
+        options.inBitmap = null;
+        return decode(source, options);
+      }
+    } finally {
+      bitmapPool.releaseTempStorage(options.inTempStorage);
+    }
+  }
+
+  /**
+   * Reads the size and the MIME type of the image without decoding its pixels.
+   */
+  @NonNull
+  BitmapFactory.Options decodeBounds(@NonNull ImageSource source) throws IOException {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inTempStorage = bitmapPool.obtainTempStorage();
+    try {
+      options.inJustDecodeBounds = true;
+      decode(source, options);
+      return options;
+    } finally {
+      bitmapPool.releaseTempStorage(options.inTempStorage);
+      options.inTempStorage = null;
+    }
+  }
+
+  private static int divideRoundingUp(int value, int divider) {
+    return (value + divider - 1) / divider;
+  }
+
+  @Nullable
+  private Bitmap decode(@NonNull ImageSource source, @NonNull BitmapFactory.Options options)
+      throws IOException {
+    if (source.type == ImageSource.TYPE_ASSET) {
+      AssetFileDescriptor descriptor;
+      try {
+        descriptor = context.getAssets().openFd(source.location);
+      } catch (FileNotFoundException e) {
+        //compressed assets can't be opened as a file descriptor, so they are streamed instead
+        try (InputStream stream = context.getAssets().open(source.location)) {
+          return BitmapFactory.decodeStream(stream, null, options);
+        }
+      }
+      return decode(descriptor, options);
+    }
+
+    return decode(openDescriptor(source), options);
+  }
+
+  @NonNull
+  private AssetFileDescriptor openDescriptor(@NonNull ImageSource source)
+      throws FileNotFoundException {
+    if (source.type == ImageSource.TYPE_FILE) {
+      return new AssetFileDescriptor(ParcelFileDescriptor.open(new File(source.location),
+          ParcelFileDescriptor.MODE_READ_ONLY), 0, AssetFileDescriptor.UNKNOWN_LENGTH);
+    }
+
+    AssetFileDescriptor descriptor = context.getContentResolver()
+        .openAssetFileDescriptor(Uri.parse(source.location), "r");
+    if (descriptor == null) {
+      throw new FileNotFoundException("Unable to open " + source);
+    }
+    return descriptor;
+  }
+
+  @Nullable
+  private static Bitmap decode(@NonNull AssetFileDescriptor descriptor,
+      @NonNull BitmapFactory.Options options) throws IOException {
+    if (descriptor.getStartOffset() == 0) {
+      try {
+        //descriptors which can't be seeked, such as pipes, are streamed by BitmapFactory itself
+        return BitmapFactory.decodeFileDescriptor(descriptor.getFileDescriptor(), null, options);
+      } finally {
+        descriptor.close();
+      }
+    }
+
+    //the image starts inside of the file, such as an uncompressed asset. The stream skips to the
+    //image start, reads no further than the image end and closes the descriptor.
+    try (InputStream stream = descriptor.createInputStream()) {
+      return BitmapFactory.decodeStream(stream, null, options);
+    }
+  }
+}
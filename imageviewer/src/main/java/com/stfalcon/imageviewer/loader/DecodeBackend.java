@@ -0,0 +1,38 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.graphics.Bitmap;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Decoder of the images read by {@link DownsamplingImageLoader}. The loader reads the size and the
+ * format of an image first and then decodes it with the first of its backends which supports the
+ * format, see {@link DownsamplingImageLoader.Builder#withDecodeBackends(DecodeBackend...)}.
+ */
+public interface DecodeBackend {
+  /**
+   * @return name of the backend reported to {@link DecodeListener}
+   */
+  @NonNull
+  String getName();
+
+  /**
+   * @return true if the backend decodes images of the MIME type on this device
+   */
+  boolean canDecode(@NonNull String mimeType);
+
+  /**
+   * Decodes the image subsampled by a power of two. It is called on a background thread.
+   *
+   * @param width width of the encoded image
+   * @param height height of the encoded image
+   * @param sampleSize the decoded bitmap should be this many times smaller than the image
+   * @param config preferred config of the bitmap
+   * @return a bitmap of the preferred config, or of a software one if the backend doesn't support
+   * it, or null if the image can't be decoded. Bitmaps of software configs should be mutable.
+   */
+  @Nullable
+  Bitmap decode(@NonNull ImageSource source, int width, int height, int sampleSize,
+      @NonNull Bitmap.Config config) throws IOException;
+}
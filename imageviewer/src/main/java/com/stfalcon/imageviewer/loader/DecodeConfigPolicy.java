@@ -0,0 +1,38 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.graphics.Bitmap;
+import android.os.Build.VERSION;
+import androidx.annotation.NonNull;
+
+/**
+ * Interface definition for a callback to be invoked when the {@link Bitmap.Config} an image is
+ * decoded to should be chosen. Loaders get it from {@link ImageRequest#getDecodeConfigPolicy()}.
+ */
+public interface DecodeConfigPolicy {
+  /**
+   * Decodes all of the images to {@link Bitmap.Config#ARGB_8888} bitmaps. It is the default one.
+   */
+  DecodeConfigPolicy ARGB_8888 = isOpaque -> Bitmap.Config.ARGB_8888;
+
+  /**
+   * Decodes opaque images to {@link Bitmap.Config#RGB_565} bitmaps, which take half of the memory
+   * at the cost of color precision.
+   */
+  DecodeConfigPolicy RGB_565_IF_OPAQUE =
+      isOpaque -> isOpaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+  /**
+   * Keeps pixels of all of the images out of the application heap with
+   * {@link Bitmap.Config#HARDWARE} bitmaps on API 26 and higher. Works as
+   * {@link #RGB_565_IF_OPAQUE} on lower API levels.
+   */
+  DecodeConfigPolicy HARDWARE = isOpaque -> VERSION.SDK_INT >= 26 ? Bitmap.Config.HARDWARE
+      : RGB_565_IF_OPAQUE.getConfig(isOpaque);
+
+  /**
+   * @param isOpaque true if the image is known to have no transparent pixels
+   * @return config of the bitmap the image should be decoded to
+   */
+  @NonNull
+  Bitmap.Config getConfig(boolean isOpaque);
+}
@@ -0,0 +1,22 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interface definition for a callback to be invoked when an image is decoded by
+ * {@link DownsamplingImageLoader}. It can be used to measure the backends on a device and pick the
+ * faster one for each format.
+ */
+public interface DecodeListener {
+  /**
+   * Called on the thread the image was decoded on.
+   *
+   * @param backend name of the {@link DecodeBackend} which decoded the image
+   * @param mimeType format of the image
+   * @param width width of the decoded bitmap
+   * @param height height of the decoded bitmap
+   * @param decodeTimeNanos time the backend spent decoding the image
+   */
+  void onImageDecoded(@NonNull String backend, @NonNull String mimeType, int width, int height,
+      long decodeTimeNanos);
+}
@@ -0,0 +1,448 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.cache.DiskRenditionCache;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import com.stfalcon.imageviewer.common.tiles.RegionTileSource;
+import com.stfalcon.imageviewer.common.tiles.TiledImageDrawable;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link AsyncImageLoader} which decodes local files, {@link Uri}s and assets on the executor of
+ * the request with a {@link DecodeBackend} chosen by the image format. Images are decoded
+ * bounds-first and subsampled to the size of the viewer page, so the memory taken by a page is
+ * bounded by the screen size rather than by the size of the original image. Pixel memory of the
+ * pages which are not displayed anymore is reused for the next decodes. Optionally, decoded
+ * renditions can be persisted on disk with {@link Builder#withDiskCache(long)} and images larger
+ * than the page can be zoomed in up to their full resolution with
+ * {@link Builder#withTiling(boolean)}.
+ */
+public final class DownsamplingImageLoader<T> extends AsyncImageLoader<T> {
+  private static final int BYTES_PER_PIXEL = 4;
+  private static final int TILE_CACHE_SCREENS = 4;
+  private static final String UNKNOWN_MIME_TYPE = "image/*";
+  private static final String JPEG_MIME_TYPE = "image/jpeg";
+  private static final List<String> REGION_MIME_TYPES =
+      Arrays.asList(JPEG_MIME_TYPE, "image/png", "image/webp");
+
+  private final Context context;
+  private final SourceResolver<T> sourceResolver;
+  private final BitmapPool bitmapPool;
+  @Nullable
+  private final DiskRenditionCache diskCache;
+  private final boolean isTilingEnabled;
+  private final BitmapFactoryBackend bitmapFactoryBackend;
+  private final DecodeBackend[] decodeBackends;
+  @Nullable
+  private final DecodeListener decodeListener;
+
+  /**
+   * @param sourceResolver maps an image object to the {@link ImageSource} it should be decoded from
+   */
+  public DownsamplingImageLoader(@NonNull Context context,
+      @NonNull SourceResolver<T> sourceResolver) {
+    this(new Builder<>(context, sourceResolver));
+  }
+
+  private DownsamplingImageLoader(@NonNull Builder<T> builder) {
+    this.context = builder.context;
+    this.sourceResolver = builder.sourceResolver;
+    this.bitmapPool = BitmapPool.getInstance();
+    this.diskCache = builder.diskCacheMaxBytes > 0
+        ? DiskRenditionCache.getInstance(context, builder.diskCacheMaxBytes) : null;
+    this.isTilingEnabled = builder.isTilingEnabled;
+    this.bitmapFactoryBackend = new BitmapFactoryBackend(context);
+    this.decodeBackends = builder.decodeBackends != null ? builder.decodeBackends
+        : new DecodeBackend[] {
+            //BitmapFactory decodes HEIF images slower and only on the same API levels
+            new ImageDecoderBackend(context, "image/heif", "image/heic", "image/avif"),
+            bitmapFactoryBackend
+        };
+    this.decodeListener = builder.decodeListener;
+  }
+
+  /**
+   * Creates a loader for the images described by {@link ImageSource} objects.
+   */
+  @NonNull
+  public static DownsamplingImageLoader<ImageSource> create(@NonNull Context context) {
+    return new DownsamplingImageLoader<>(context, source -> source);
+  }
+
+  @NonNull
+  @Override
+  public ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target) {
+    DecodeTask task = new DecodeTask(sourceResolver.resolve(request.getImage()), request, target);
+    request.getExecutor().execute(task);
+    return task;
+  }
+
+  @Nullable
+  LoadResult load(@NonNull ImageSource source, int reqWidth, int reqHeight,
+      @NonNull DecodeConfigPolicy configPolicy) throws IOException {
+    if (diskCache == null) {
+      Bitmap bitmap = decode(source, reqWidth, reqHeight, configPolicy, false);
+      return bitmap != null ? new LoadResult(bitmap, null, null) : null;
+    }
+
+    String key = DiskRenditionCache.createKey(source.getCacheKey(), reqWidth, reqHeight,
+        getSoftwareConfig(configPolicy, true), getSoftwareConfig(configPolicy, false));
+    Bitmap bitmap = diskCache.get(key, bitmapPool);
+    boolean isStored = bitmap != null;
+    if (bitmap == null) {
+      bitmap = decode(source, reqWidth, reqHeight, configPolicy, true);
+    }
+    if (bitmap == null) {
+      return null;
+    }
+
+    //the disk cache needs access to the pixels, so they are moved to graphics memory afterwards
+    Bitmap displayed = bitmap;
+    if (Bitmaps.isHardware(configPolicy.getConfig(!bitmap.hasAlpha()))) {
+      displayed = Bitmaps.copyToHardware(bitmap);
+      if (displayed != bitmap && isStored) {
+        bitmapPool.put(bitmap);
+      }
+    }
+    return new LoadResult(displayed, isStored ? null : bitmap, isStored ? null : key);
+  }
+
+  /**
+   * Stores the rendition of the result in the disk cache. It is done after the image is
+   * delivered, so the write doesn't delay displaying it.
+   */
+  private void store(@NonNull LoadResult result) {
+    if (diskCache != null && result.rendition != null && result.renditionKey != null) {
+      diskCache.put(result.renditionKey, result.rendition);
+    }
+    //the software source of a hardware bitmap is not displayed
+    if (result.rendition != null && result.rendition != result.bitmap) {
+      bitmapPool.put(result.rendition);
+    }
+  }
+
+  /**
+   * @param isSoftwareRequired true if the pixels of the bitmap should be accessible by software
+   */
+  @Nullable
+  private Bitmap decode(@NonNull ImageSource source, int reqWidth, int reqHeight,
+      @NonNull DecodeConfigPolicy configPolicy, boolean isSoftwareRequired) throws IOException {
+    BitmapFactory.Options bounds = bitmapFactoryBackend.decodeBounds(source);
+    if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+      return null;
+    }
+
+    String mimeType = bounds.outMimeType != null ? bounds.outMimeType : UNKNOWN_MIME_TYPE;
+    DecodeBackend backend = bitmapFactoryBackend;
+    for (DecodeBackend candidate : decodeBackends) {
+      if (candidate.canDecode(mimeType)) {
+        backend = candidate;
+        break;
+      }
+    }
+
+    //JPEG has no alpha channel, other formats are decoded as possibly translucent
+    boolean isOpaque = JPEG_MIME_TYPE.equals(mimeType);
+    Bitmap.Config config = isSoftwareRequired ? getSoftwareConfig(configPolicy, isOpaque)
+        : configPolicy.getConfig(isOpaque);
+
+    int sampleSize = Bitmaps.calculateInSampleSize(bounds.outWidth, bounds.outHeight,
+        reqWidth, reqHeight);
+    long startTime = System.nanoTime();
+    Bitmap bitmap = backend.decode(source, bounds.outWidth, bounds.outHeight, sampleSize, config);
+    if (bitmap != null && decodeListener != null) {
+      decodeListener.onImageDecoded(backend.getName(), mimeType, bitmap.getWidth(),
+          bitmap.getHeight(), System.nanoTime() - startTime);
+    }
+    return bitmap;
+  }
+
+  /**
+   * @return config of the policy with hardware bitmaps replaced by the software ones
+   */
+  @NonNull
+  private static Bitmap.Config getSoftwareConfig(@NonNull DecodeConfigPolicy configPolicy,
+      boolean isOpaque) {
+    Bitmap.Config config = configPolicy.getConfig(isOpaque);
+    return Bitmaps.isHardware(config) ? Bitmap.Config.ARGB_8888 : config;
+  }
+
+  /**
+   * @return true if the image is going to be displayed with tiles, decided by its bounds only
+   */
+  private boolean isTiled(@NonNull ImageSource source, int reqWidth, int reqHeight) {
+    BitmapFactory.Options bounds;
+    try {
+      bounds = bitmapFactoryBackend.decodeBounds(source);
+    } catch (IOException | RuntimeException e) {
+      //the load reports the error
+      return false;
+    }
+    if (bounds.outWidth <= 0 || bounds.outHeight <= 0
+        || !REGION_MIME_TYPES.contains(bounds.outMimeType)) {
+      return false;
+    }
+    int sampleSize = Bitmaps.calculateInSampleSize(bounds.outWidth, bounds.outHeight,
+        reqWidth, reqHeight);
+    return sampleSize > 1;
+  }
+
+  /**
+   * @return a source of the full resolution tiles or null if the base bitmap already has all of
+   * the pixels of the image or the format can't be decoded by regions
+   */
+  @Nullable
+  private RegionTileSource openTileSource(@NonNull ImageSource source, @NonNull Bitmap base) {
+    try {
+      RegionTileSource tileSource = new RegionTileSource(() -> openRegionDecoder(source),
+          bitmapPool, DecodeScheduler.getDefaultConcurrency());
+      if (tileSource.getWidth() > base.getWidth()) {
+        return tileSource;
+      }
+      tileSource.close();
+    } catch (IOException | RuntimeException e) {
+      //the image is displayed from the base bitmap only
+    }
+    return null;
+  }
+
+  @NonNull
+  private BitmapRegionDecoder openRegionDecoder(@NonNull ImageSource source) throws IOException {
+    if (source.type == ImageSource.TYPE_FILE) {
+      return BitmapRegionDecoder.newInstance(source.location, false);
+    }
+
+    try (InputStream stream = source.type == ImageSource.TYPE_ASSET
+        ? context.getAssets().open(source.location)
+        : context.getContentResolver().openInputStream(Uri.parse(source.location))) {
+      if (stream == null) {
+        throw new FileNotFoundException("Unable to open " + source);
+      }
+      return BitmapRegionDecoder.newInstance(stream, false);
+    }
+  }
+
+  /**
+   * Builder class for {@link DownsamplingImageLoader}
+   */
+  public static class Builder<T> {
+    private final Context context;
+    private final SourceResolver<T> sourceResolver;
+    private long diskCacheMaxBytes;
+    private boolean isTilingEnabled;
+    @Nullable
+    private DecodeBackend[] decodeBackends;
+    @Nullable
+    private DecodeListener decodeListener;
+
+    /**
+     * @param sourceResolver maps an image object to the {@link ImageSource} it should be decoded
+     * from
+     */
+    public Builder(@NonNull Context context, @NonNull SourceResolver<T> sourceResolver) {
+      this.context = context.getApplicationContext();
+      this.sourceResolver = sourceResolver;
+    }
+
+    /**
+     * Enables persisting of the decoded renditions in the application cache directory, so images
+     * opened again are read back without decoding, even after the process restart. The cache is
+     * shared by all of the loaders in the process.
+     *
+     * @param maxBytes size cap of the cache, least recently used renditions are removed above it
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withDiskCache(long maxBytes) {
+      this.diskCacheMaxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Enables tiled rendering of the images which are larger than the page. Such images are
+     * displayed from a low-resolution base layer, and as the page is zoomed in, the visible tiles
+     * are decoded at the resolution matching the zoom. Tiles are decoded in parallel and dropped
+     * once they leave the visible area, so memory use doesn't depend on the size of the image.
+     * Supported for JPEG, PNG and WebP images.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withTiling(boolean enabled) {
+      this.isTilingEnabled = enabled;
+      return this;
+    }
+
+    /**
+     * Sets the backends images are decoded with. An image is decoded by the first backend which
+     * supports its format, {@link BitmapFactoryBackend} is used if none of them does. By default
+     * HEIF and AVIF images are decoded with {@link ImageDecoderBackend} on API 28 and higher and
+     * the other images with {@link BitmapFactoryBackend}.
+     *
+     * @param backends backends in the order of preference
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withDecodeBackends(@NonNull DecodeBackend... backends) {
+      this.decodeBackends = backends.clone();
+      return this;
+    }
+
+    /**
+     * Sets {@link DecodeListener} which receives the decode time of every image along with the
+     * backend which decoded it.
+     *
+     * @return This Builder object to allow calls chaining
+     */
+    public Builder<T> withDecodeListener(@NonNull DecodeListener decodeListener) {
+      this.decodeListener = decodeListener;
+      return this;
+    }
+
+    /**
+     * Creates a {@link DownsamplingImageLoader} with the arguments supplied to this builder.
+     */
+    public DownsamplingImageLoader<T> build() {
+      return new DownsamplingImageLoader<>(this);
+    }
+  }
+
+  /**
+   * Interface definition for a callback to be invoked when an image object should be mapped to
+   * the {@link ImageSource} it is decoded from.
+   */
+  public interface SourceResolver<T> {
+    @NonNull
+    ImageSource resolve(@NonNull T image);
+  }
+
+  /**
+   * Bitmap to display along with the rendition which should be stored in the disk cache once the
+   * bitmap is delivered.
+   */
+  static final class LoadResult {
+    @NonNull
+    final Bitmap bitmap;
+    /**
+     * The bitmap itself or its software source if the bitmap is a hardware one, null if the
+     * rendition is already stored.
+     */
+    @Nullable
+    final Bitmap rendition;
+    @Nullable
+    final String renditionKey;
+
+    LoadResult(@NonNull Bitmap bitmap, @Nullable Bitmap rendition,
+        @Nullable String renditionKey) {
+      this.bitmap = bitmap;
+      this.rendition = rendition;
+      this.renditionKey = renditionKey;
+    }
+  }
+
+  private final class DecodeTask implements DecodeScheduler.RejectableTask, ImageRequestHandle {
+    private final ImageSource source;
+    private final ImageRequest<T> request;
+    private final ImageTarget target;
+    private volatile boolean isCancelled;
+
+    DecodeTask(@NonNull ImageSource source, @NonNull ImageRequest<T> request,
+        @NonNull ImageTarget target) {
+      this.source = source;
+      this.request = request;
+      this.target = target;
+    }
+
+    @Override public void run() {
+      if (isCancelled) {
+        return;
+      }
+
+      int reqWidth = request.getTargetWidth();
+      int reqHeight = request.getTargetHeight();
+      if (isTilingEnabled && request.isPrefetch() && isTiled(source, reqWidth, reqHeight)
+          && request.skipPrefetch()) {
+        //tiled images are not cached, so the prefetched image would be thrown away
+        target.onImageLoadFailed(null);
+        return;
+      }
+
+      LoadResult result;
+      RegionTileSource tileSource = null;
+      try {
+        result = load(source, reqWidth, reqHeight, request.getDecodeConfigPolicy());
+        if (result != null && isTilingEnabled && !isCancelled) {
+          tileSource = openTileSource(source, result.bitmap);
+        }
+      } catch (IOException | RuntimeException e) {
+        if (!isCancelled) {
+          target.onImageLoadFailed(e);
+        }
+        return;
+      }
+
+      if (isCancelled) {
+        if (result != null) {
+          //the rendition is stored anyway, as the image is decoded already
+          store(result);
+          bitmapPool.put(result.bitmap);
+        }
+        if (tileSource != null) {
+          tileSource.close();
+        }
+        return;
+      }
+
+      if (result == null) {
+        target.onImageLoadFailed(new IOException("Unable to decode " + source));
+        return;
+      }
+
+      Bitmap bitmap = result.bitmap;
+
+      Drawable drawable;
+      if (tileSource != null) {
+        long maxTileBytes = (long) reqWidth * reqHeight * BYTES_PER_PIXEL * TILE_CACHE_SCREENS;
+        drawable = new TiledImageDrawable(bitmap, tileSource,
+            request.newExecutor(ImageRequest.PRIORITY_VISIBLE), bitmapPool,
+            (int) Math.min(Integer.MAX_VALUE, maxTileBytes));
+      } else {
+        bitmapPool.track(bitmap);
+        drawable = new BitmapDrawable(context.getResources(), bitmap);
+      }
+      target.onImageLoaded(drawable);
+      //the lease of this request keeps the pixels from being reused while they are stored
+      store(result);
+      //the targets deliver images on the main thread, so they are able to take their leases
+      //before the one of this request is released
+      MainThread.post(() -> bitmapPool.release(drawable));
+    }
+
+    @Override public void onRejected(@NonNull RuntimeException error) {
+      if (!isCancelled) {
+        target.onImageLoadFailed(error);
+      }
+    }
+
+    @Override public void cancel() {
+      isCancelled = true;
+    }
+
+    @Override public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+import java.util.List;
+
+/**
+ * Source of the images of a large gallery, for example the one stored in a database. The viewer
+ * doesn't need all of the images at once: it loads them in chunks around the current position and
+ * drops the chunks the user has swiped away from, so galleries of any size are opened at once and
+ * in constant memory.
+ */
+public interface ImageDataSource<T> {
+  /**
+   * It is called on the main thread once the viewer is created, so it should be cheap.
+   *
+   * @return total count of the images
+   */
+  int getCount();
+
+  /**
+   * Loads a chunk of the images. It is called on a background thread.
+   *
+   * @param startPosition position of the first image of the chunk
+   * @param count count of the images in the chunk
+   * @return the images of the chunk in order, the ones which are missing at the end of it are not
+   * displayed
+   */
+  @NonNull
+  List<T> loadRange(int startPosition, int count);
+}
@@ -0,0 +1,86 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.Build.VERSION;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link DecodeBackend} based on {@link ImageDecoder}, available on API 28 and higher. It decodes
+ * HEIF images faster than {@link android.graphics.BitmapFactory}, but can't reuse pooled bitmaps.
+ */
+public final class ImageDecoderBackend implements DecodeBackend {
+  public static final String NAME = "ImageDecoder";
+
+  private final Context context;
+  @Nullable
+  private final Set<String> mimeTypes;
+
+  /**
+   * Creates a backend for all of the formats supported by {@link ImageDecoder}.
+   */
+  public ImageDecoderBackend(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+    this.mimeTypes = null;
+  }
+
+  /**
+   * Creates a backend for the listed formats only.
+   *
+   * @param mimeTypes MIME types of the formats, like `image/heif`
+   */
+  public ImageDecoderBackend(@NonNull Context context, @NonNull String... mimeTypes) {
+    this.context = context.getApplicationContext();
+    this.mimeTypes = new HashSet<>(Arrays.asList(mimeTypes));
+  }
+
+  @NonNull
+  @Override public String getName() {
+    return NAME;
+  }
+
+  @Override public boolean canDecode(@NonNull String mimeType) {
+    return VERSION.SDK_INT >= 28 && (mimeTypes == null || mimeTypes.contains(mimeType));
+  }
+
+  @TargetApi(28)
+  @Nullable
+  @Override public Bitmap decode(@NonNull ImageSource source, int width, int height,
+      int sampleSize, @NonNull Bitmap.Config config) throws IOException {
+    ImageDecoder.Source decoderSource;
+    if (source.type == ImageSource.TYPE_FILE) {
+      decoderSource = ImageDecoder.createSource(new File(source.location));
+    } else if (source.type == ImageSource.TYPE_ASSET) {
+      decoderSource = ImageDecoder.createSource(context.getAssets(), source.location);
+    } else {
+      decoderSource = ImageDecoder.createSource(context.getContentResolver(),
+          Uri.parse(source.location));
+    }
+
+    return ImageDecoder.decodeBitmap(decoderSource, (decoder, info, imageSource) -> {
+      decoder.setTargetSampleSize(sampleSize);
+      if (config == Bitmap.Config.HARDWARE) {
+        decoder.setAllocator(ImageDecoder.ALLOCATOR_HARDWARE);
+        return;
+      }
+
+      //software bitmaps are pooled and written to the disk cache, so their pixels should be
+      //accessible
+      decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+      decoder.setMutableRequired(true);
+      if (config == Bitmap.Config.RGB_565) {
+        //makes the decoder use RGB_565 for opaque images
+        decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
+      }
+    });
+  }
+}
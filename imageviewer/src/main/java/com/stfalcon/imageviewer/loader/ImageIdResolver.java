@@ -0,0 +1,15 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interface definition for a callback to be invoked when the stable ID of an image should be
+ * found. IDs let the viewer find the pages of the images which are still in the list after it is
+ * updated, so they keep their views, loaded images and zoom.
+ */
+public interface ImageIdResolver<T> {
+  /**
+   * @return ID which is unique in the list and doesn't change while the image stays in it
+   */
+  long getId(@NonNull T image);
+}
@@ -0,0 +1,28 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+
+/**
+ * Adapts a plain {@link ImageLoader} to the {@link AsyncImageLoader} contract. Images are loaded
+ * directly into the target view, so the returned requests can't be cancelled, the loading
+ * completion is not reported and the requested size is ignored.
+ */
+public final class ImageLoaderAdapter<T> extends AsyncImageLoader<T> {
+  private final ImageLoader<T> imageLoader;
+
+  public ImageLoaderAdapter(@NonNull ImageLoader<T> imageLoader) {
+    this.imageLoader = imageLoader;
+  }
+
+  @NonNull
+  @Override
+  public ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target) {
+    ImageView imageView = target.getImageView();
+    if (imageView != null) {
+      imageLoader.loadImage(imageView, request.getImage());
+    }
+    return new SimpleRequestHandle();
+  }
+}
@@ -0,0 +1,252 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.Px;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import java.util.concurrent.Executor;
+
+/**
+ * Describes an image which should be loaded by {@link AsyncImageLoader} along with the size of the
+ * area it is going to be displayed in. Loaders can use it to fetch or decode a rendition which is
+ * no bigger than needed. Blocking work should be run on {@link #getExecutor()}, which orders it by
+ * the request priority and drops it once the viewer does not need the image anymore.
+ */
+public final class ImageRequest<T> {
+  /**
+   * Priority of the page which is currently displayed.
+   */
+  public static final int PRIORITY_VISIBLE = 0;
+  /**
+   * Priority of the image used for the open and close transition.
+   */
+  public static final int PRIORITY_TRANSITION = 1;
+  /**
+   * Priority of the closest neighbour page, further neighbours get higher values by distance.
+   */
+  public static final int PRIORITY_NEIGHBOUR = 2;
+
+  @NonNull
+  private final T image;
+  private final int pageWidth;
+  private final int pageHeight;
+  @NonNull
+  private final int[] containerPadding;
+  private final float density;
+  private final float scale;
+  private int priority;
+  @NonNull
+  private final DecodeConfigPolicy decodeConfigPolicy;
+  @NonNull
+  private final DecodeScheduler scheduler;
+  @Nullable
+  private DecodeScheduler.PriorityExecutor executor;
+  private boolean isCancelled;
+  private boolean isPrefetch;
+  private boolean isPrefetchSkipped;
+
+  public ImageRequest(@NonNull T image, @Px int pageWidth, @Px int pageHeight,
+      @NonNull int[] containerPadding, float density, float scale) {
+    this(image, pageWidth, pageHeight, containerPadding, density, scale, PRIORITY_VISIBLE,
+        DecodeConfigPolicy.ARGB_8888, DecodeScheduler.getInstance());
+  }
+
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public ImageRequest(@NonNull T image, @Px int pageWidth, @Px int pageHeight,
+      @NonNull int[] containerPadding, float density, float scale, int priority,
+      @NonNull DecodeConfigPolicy decodeConfigPolicy, @NonNull DecodeScheduler scheduler) {
+    this.image = image;
+    this.pageWidth = pageWidth;
+    this.pageHeight = pageHeight;
+    this.containerPadding = containerPadding;
+    this.density = density;
+    this.scale = scale;
+    this.priority = priority;
+    this.decodeConfigPolicy = decodeConfigPolicy;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * @return image data from which image should be loaded
+   */
+  @NonNull
+  public T getImage() {
+    return image;
+  }
+
+  /**
+   * @return width of the viewer page in pixels, container padding excluded
+   */
+  @Px
+  public int getPageWidth() {
+    return pageWidth;
+  }
+
+  /**
+   * @return height of the viewer page in pixels, container padding excluded
+   */
+  @Px
+  public int getPageHeight() {
+    return pageHeight;
+  }
+
+  /**
+   * @return `start`, `top`, `end` and `bottom` container padding in pixels
+   */
+  @NonNull
+  public int[] getContainerPadding() {
+    return containerPadding.clone();
+  }
+
+  /**
+   * @return logical density of the display
+   */
+  public float getDensity() {
+    return density;
+  }
+
+  /**
+   * @return zoom of the page at the moment of the request, 1 for the not zoomed image
+   */
+  public float getScale() {
+    return scale;
+  }
+
+  /**
+   * @return width in pixels the image needs to cover the page at the current zoom
+   */
+  @Px
+  public int getTargetWidth() {
+    return Math.round(pageWidth * Math.max(scale, 1f));
+  }
+
+  /**
+   * @return height in pixels the image needs to cover the page at the current zoom
+   */
+  @Px
+  public int getTargetHeight() {
+    return Math.round(pageHeight * Math.max(scale, 1f));
+  }
+
+  /**
+   * @return priority of the request, lower values are more important. See {@link
+   * #PRIORITY_VISIBLE}, {@link #PRIORITY_TRANSITION} and {@link #PRIORITY_NEIGHBOUR}.
+   */
+  public synchronized int getPriority() {
+    return priority;
+  }
+
+  /**
+   * Makes the request more important, such as when the visible page joins a request made for a
+   * neighbour. The waiting blocking work of the request is moved ahead in the queue.
+   */
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public synchronized void raisePriority(int priority) {
+    if (priority >= this.priority) {
+      return;
+    }
+
+    this.priority = priority;
+    if (executor != null) {
+      executor.raisePriority(priority);
+    }
+  }
+
+  /**
+   * @return true if the request is made only to warm the caches for an image which is not
+   * displayed yet
+   */
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public synchronized boolean isPrefetch() {
+    return isPrefetch;
+  }
+
+  /**
+   * Marks the request as a prefetch, before it is loaded.
+   */
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public synchronized void markPrefetch() {
+    isPrefetch = true;
+  }
+
+  /**
+   * Makes a prefetch a request for a displayed image, such as when a page joins it.
+   *
+   * @return false if the loader has already skipped the prefetch, so the page should make a
+   * request of its own
+   */
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public synchronized boolean markDisplayed() {
+    if (isPrefetchSkipped) {
+      return false;
+    }
+
+    isPrefetch = false;
+    return true;
+  }
+
+  /**
+   * Skips the request if it is still a prefetch. Loaders skip prefetches of the images which
+   * can't be cached, like tiled ones, as their results would be thrown away.
+   *
+   * @return true if the request is skipped and should be failed without loading
+   */
+  synchronized boolean skipPrefetch() {
+    if (!isPrefetch) {
+      return false;
+    }
+
+    isPrefetchSkipped = true;
+    return true;
+  }
+
+  /**
+   * @return the policy which chooses the config of the decoded bitmap
+   */
+  @NonNull
+  public DecodeConfigPolicy getDecodeConfigPolicy() {
+    return decodeConfigPolicy;
+  }
+
+  /**
+   * @return an executor for the blocking work of this request. It runs tasks on the pool shared by
+   * the viewer, visible pages first, and drops the waiting tasks once the request is cancelled.
+   */
+  @NonNull
+  public synchronized Executor getExecutor() {
+    //created once the request is loaded, so a request which is only built is not scheduled
+    if (executor == null) {
+      executor = scheduler.newExecutor(priority);
+      if (isCancelled) {
+        executor.cancel();
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * @return true if the viewer does not need the requested image anymore
+   */
+  public synchronized boolean isCancelled() {
+    return isCancelled;
+  }
+
+  /**
+   * @return an executor on the pool of this request for the work which outlives it, like decoding
+   * of the tiles of the delivered image
+   */
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  @NonNull
+  public DecodeScheduler.PriorityExecutor newExecutor(int priority) {
+    return scheduler.newExecutor(priority);
+  }
+
+  @RestrictTo(value = RestrictTo.Scope.LIBRARY)
+  public synchronized void cancel() {
+    isCancelled = true;
+    if (executor != null) {
+      executor.cancel();
+    }
+  }
+}
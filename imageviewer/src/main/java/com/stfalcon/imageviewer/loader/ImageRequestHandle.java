@@ -0,0 +1,16 @@
+package com.stfalcon.imageviewer.loader;
+
+/**
+ * A handle of a request started by {@link AsyncImageLoader}.
+ */
+public interface ImageRequestHandle {
+  /**
+   * Cancels the request. Target of the cancelled request should not be notified anymore.
+   */
+  void cancel();
+
+  /**
+   * @return true if {@link #cancel()} was called for this request
+   */
+  boolean isCancelled();
+}
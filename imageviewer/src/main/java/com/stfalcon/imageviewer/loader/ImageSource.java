@@ -0,0 +1,85 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import java.io.File;
+
+/**
+ * Describes a local image which can be read by {@link DownsamplingImageLoader}: a file, an
+ * {@link Uri} supported by {@link android.content.ContentResolver} or an application asset.
+ */
+public final class ImageSource {
+  static final int TYPE_FILE = 0;
+  static final int TYPE_URI = 1;
+  static final int TYPE_ASSET = 2;
+
+  final int type;
+  @NonNull
+  final String location;
+
+  private ImageSource(int type, @NonNull String location) {
+    this.type = type;
+    this.location = location;
+  }
+
+  @NonNull
+  public static ImageSource file(@NonNull String path) {
+    return new ImageSource(TYPE_FILE, path);
+  }
+
+  @NonNull
+  public static ImageSource file(@NonNull File file) {
+    return file(file.getAbsolutePath());
+  }
+
+  /**
+   * @param uri `content://`, `file://` or `android.resource://` uri of the image
+   */
+  @NonNull
+  public static ImageSource uri(@NonNull Uri uri) {
+    return new ImageSource(TYPE_URI, uri.toString());
+  }
+
+  /**
+   * @param assetPath path of the image relative to the `assets` folder
+   */
+  @NonNull
+  public static ImageSource asset(@NonNull String assetPath) {
+    return new ImageSource(TYPE_ASSET, assetPath);
+  }
+
+  /**
+   * @return a key which identifies the current content of the source across process restarts
+   */
+  @NonNull
+  String getCacheKey() {
+    if (type == TYPE_FILE) {
+      File file = new File(location);
+      return type + ":" + location + ":" + file.lastModified() + ":" + file.length();
+    }
+    return type + ":" + location;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ImageSource)) {
+      return false;
+    }
+    ImageSource that = (ImageSource) o;
+    return type == that.type && location.equals(that.location);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * type + location.hashCode();
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return "ImageSource{type=" + type + ", location='" + location + "'}";
+  }
+}
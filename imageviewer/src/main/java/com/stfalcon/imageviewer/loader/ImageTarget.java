@@ -0,0 +1,35 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Interface definition for a callback to be invoked when an {@link AsyncImageLoader} request is
+ * finished. Callbacks can be invoked from any thread.
+ */
+public interface ImageTarget {
+  /**
+   * Returns a view the loaded image is going to be displayed in. Used only by loaders which are not
+   * able to deliver a {@link Drawable} and load images into a view directly.
+   *
+   * @return target {@link ImageView} or null when there is no view to display the image in yet
+   */
+  @Nullable
+  ImageView getImageView();
+
+  /**
+   * Fires when the image was successfully loaded.
+   *
+   * @param drawable loaded image
+   */
+  void onImageLoaded(@NonNull Drawable drawable);
+
+  /**
+   * Fires when the image could not be loaded.
+   *
+   * @param error an error occurred while loading, if any
+   */
+  void onImageLoadFailed(@Nullable Throwable error);
+}
@@ -0,0 +1,18 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Interface definition for a callback to be invoked when a low-resolution preview of an image
+ * should be found. The preview is loaded with the same loader as the image itself and displayed
+ * until the full image is loaded.
+ */
+public interface PreviewResolver<T> {
+  /**
+   * @param image image data the preview is requested for
+   * @return image data of the preview or null if the image has no preview
+   */
+  @Nullable
+  T getPreview(@NonNull T image);
+}
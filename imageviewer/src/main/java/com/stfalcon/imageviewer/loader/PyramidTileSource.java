@@ -0,0 +1,183 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Xml;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * {@link TileSource} of an image stored as a pyramid of tile files, like the ones produced for Deep
+ * Zoom. Files of the tiles are located with {@link PathResolver}, so any directory layout can be
+ * used, and the layout of Deep Zoom images is read from their descriptor by {@link #fromDzi(File)}.
+ * Tiles are read only once they are displayed, so an image of any size is opened in constant
+ * memory.
+ */
+public final class PyramidTileSource implements TileSource {
+  private final int width;
+  private final int height;
+  private final int tileSize;
+  private final int overlap;
+  private final int levelCount;
+  private final PathResolver pathResolver;
+  private final BitmapPool bitmapPool;
+
+  /**
+   * @param width width of the image at its full resolution
+   * @param height height of the image at its full resolution
+   * @param tileSize side of a tile, overlap excluded
+   * @param overlap count of pixels of the neighbour tiles which are included in every tile
+   * @param pathResolver maps a tile to its file, levels are counted from the full resolution one
+   */
+  public PyramidTileSource(int width, int height, int tileSize, int overlap,
+      @NonNull PathResolver pathResolver) {
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+    this.overlap = overlap;
+    this.pathResolver = pathResolver;
+    this.bitmapPool = BitmapPool.getInstance();
+
+    int levelCount = 1;
+    while (Math.max(width, height) >> (levelCount - 1) > tileSize) {
+      levelCount++;
+    }
+    this.levelCount = levelCount;
+  }
+
+  /**
+   * Creates a source of a Deep Zoom image. Its tiles are expected in the `name_files` directory
+   * next to the `name.dzi` descriptor, in `level/column_row.format` files.
+   *
+   * @param descriptor the `.dzi` file describing the image
+   */
+  @NonNull
+  public static PyramidTileSource fromDzi(@NonNull File descriptor) throws IOException {
+    int tileSize = 0;
+    int overlap = 0;
+    int width = 0;
+    int height = 0;
+    String format = null;
+    try (InputStream stream = new FileInputStream(descriptor)) {
+      XmlPullParser parser = Xml.newPullParser();
+      parser.setInput(stream, null);
+      for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT;
+          event = parser.next()) {
+        if (event != XmlPullParser.START_TAG) {
+          continue;
+        }
+
+        if ("Image".equals(parser.getName())) {
+          tileSize = Integer.parseInt(parser.getAttributeValue(null, "TileSize"));
+          overlap = Integer.parseInt(parser.getAttributeValue(null, "Overlap"));
+          format = parser.getAttributeValue(null, "Format");
+        } else if ("Size".equals(parser.getName())) {
+          width = Integer.parseInt(parser.getAttributeValue(null, "Width"));
+          height = Integer.parseInt(parser.getAttributeValue(null, "Height"));
+        }
+      }
+    } catch (XmlPullParserException | NumberFormatException e) {
+      throw new IOException("Malformed descriptor " + descriptor, e);
+    }
+
+    if (tileSize <= 0 || width <= 0 || height <= 0 || format == null) {
+      throw new IOException("Malformed descriptor " + descriptor);
+    }
+
+    String name = descriptor.getName();
+    int extensionStart = name.lastIndexOf('.');
+    File directory = new File(descriptor.getParentFile(),
+        (extensionStart > 0 ? name.substring(0, extensionStart) : name) + "_files");
+
+    //Deep Zoom levels are counted from the 1x1 pixel one
+    int maxLevel = 0;
+    while ((1 << maxLevel) < Math.max(width, height)) {
+      maxLevel++;
+    }
+    int dziMaxLevel = maxLevel;
+    String extension = format;
+    return new PyramidTileSource(width, height, tileSize, overlap, (level, column, row) ->
+        new File(directory, (dziMaxLevel - level) + "/" + column + "_" + row + "." + extension));
+  }
+
+  @Override public int getWidth() {
+    return width;
+  }
+
+  @Override public int getHeight() {
+    return height;
+  }
+
+  @Override public int getTileSize() {
+    return tileSize;
+  }
+
+  @Override public int getLevelCount() {
+    return levelCount;
+  }
+
+  @Nullable
+  @Override public Bitmap getTile(int level, int column, int row) throws IOException {
+    File file = pathResolver.getTile(level, column, row);
+    if (!file.exists()) {
+      return null;
+    }
+
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inTempStorage = bitmapPool.obtainTempStorage();
+    Bitmap decoded;
+    try {
+      decoded = BitmapFactory.decodeFile(file.getPath(), options);
+    } finally {
+      bitmapPool.releaseTempStorage(options.inTempStorage);
+    }
+    if (decoded == null) {
+      throw new IOException("Unable to decode " + file);
+    }
+
+    //the overlapping pixels are cut off, so tiles are placed next to each other
+    int left = column > 0 ? overlap : 0;
+    int top = row > 0 ? overlap : 0;
+    int tileWidth = Math.min(Math.min(tileSize, ((width - 1) >> level) + 1 - column * tileSize),
+        decoded.getWidth() - left);
+    int tileHeight = Math.min(Math.min(tileSize, ((height - 1) >> level) + 1 - row * tileSize),
+        decoded.getHeight() - top);
+    if (tileWidth <= 0 || tileHeight <= 0) {
+      decoded.recycle();
+      return null;
+    }
+    if (left == 0 && top == 0
+        && tileWidth == decoded.getWidth() && tileHeight == decoded.getHeight()) {
+      return decoded;
+    }
+
+    Bitmap tile = Bitmap.createBitmap(decoded, left, top, tileWidth, tileHeight);
+    if (tile != decoded) {
+      decoded.recycle();
+    }
+    return tile;
+  }
+
+  @Override public void close() {
+    //files are opened only while tiles are read
+  }
+
+  /**
+   * Interface definition for a callback to be invoked when the file of a tile should be found.
+   */
+  public interface PathResolver {
+    /**
+     * @param level level of the tile, 0 for the full resolution
+     * @return the file of the tile, it may not exist if the tile is missing
+     */
+    @NonNull
+    File getTile(int level, int column, int row);
+  }
+}
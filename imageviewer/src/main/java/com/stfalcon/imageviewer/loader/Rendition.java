@@ -0,0 +1,40 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Px;
+
+/**
+ * One of the available sizes of an image, see {@link RenditionResolver}.
+ */
+public final class Rendition<T> {
+  @NonNull
+  private final T image;
+  private final int width;
+  private final int height;
+
+  /**
+   * @param image image data which is passed to the loader to load this rendition
+   * @param width width of the rendition in pixels
+   * @param height height of the rendition in pixels
+   */
+  public Rendition(@NonNull T image, @Px int width, @Px int height) {
+    this.image = image;
+    this.width = width;
+    this.height = height;
+  }
+
+  @NonNull
+  public T getImage() {
+    return image;
+  }
+
+  @Px
+  public int getWidth() {
+    return width;
+  }
+
+  @Px
+  public int getHeight() {
+    return height;
+  }
+}
@@ -0,0 +1,17 @@
+package com.stfalcon.imageviewer.loader;
+
+import androidx.annotation.NonNull;
+import java.util.List;
+
+/**
+ * Interface definition for a callback to be invoked when the available sizes of an image should be
+ * listed. A page displays the smallest rendition which covers it and steps up to larger ones as it
+ * is zoomed in.
+ */
+public interface RenditionResolver<T> {
+  /**
+   * @return renditions of the image in any order, an empty list to load the image as is
+   */
+  @NonNull
+  List<Rendition<T>> getRenditions(@NonNull T image);
+}
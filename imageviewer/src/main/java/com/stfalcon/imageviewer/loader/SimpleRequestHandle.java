@@ -0,0 +1,17 @@
+package com.stfalcon.imageviewer.loader;
+
+/**
+ * {@link ImageRequestHandle} which only remembers whether it was cancelled. Useful for requests
+ * which are completed synchronously or which check the cancellation flag by themselves.
+ */
+public class SimpleRequestHandle implements ImageRequestHandle {
+  private volatile boolean isCancelled;
+
+  @Override public void cancel() {
+    isCancelled = true;
+  }
+
+  @Override public boolean isCancelled() {
+    return isCancelled;
+  }
+}
@@ -0,0 +1,65 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.graphics.Bitmap;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Source of the tiles of a large image, which lets the viewer display it by parts as the user
+ * zooms in. Tiles form a pyramid: the level 0 is the image at its full resolution and every next
+ * level is twice smaller than the previous one. Tiles are squares of {@link #getTileSize()}
+ * pixels of their level, the tiles at the right and the bottom edges of a level can be smaller.
+ * <p>
+ * Tiles are requested from several background threads at the same time.
+ */
+public interface TileSource {
+  /**
+   * @return width of the image at its full resolution
+   */
+  int getWidth();
+
+  /**
+   * @return height of the image at its full resolution
+   */
+  int getHeight();
+
+  /**
+   * @return side of a tile in the pixels of its level
+   */
+  int getTileSize();
+
+  /**
+   * @return count of the levels of the pyramid, the last one should fit in a single tile
+   */
+  int getLevelCount();
+
+  /**
+   * Loads a tile of the pyramid. It is called on a background thread. The returned bitmap is owned
+   * by the viewer, which reuses its memory once the tile is not displayed anymore.
+   *
+   * @param level level of the tile, 0 for the full resolution
+   * @param column zero-based column of the tile in its level
+   * @param row zero-based row of the tile in its level
+   * @return the tile or null if it is missing
+   */
+  @Nullable
+  Bitmap getTile(int level, int column, int row) throws IOException;
+
+  /**
+   * Frees the resources of the source, no tiles are requested after it.
+   */
+  void close();
+
+  /**
+   * Interface definition for a callback to be invoked when a {@link TileSource} of an image should
+   * be opened.
+   */
+  interface Factory<T> {
+    /**
+     * Opens the source of the tiles of the image. It is called on a background thread.
+     */
+    @NonNull
+    TileSource open(@NonNull T image) throws IOException;
+  }
+}
@@ -0,0 +1,194 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import com.stfalcon.imageviewer.common.tiles.TiledImageDrawable;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import java.io.IOException;
+
+/**
+ * {@link AsyncImageLoader} which displays images from their {@link TileSource}s, for example from
+ * the pyramids of tiles stored with {@link PyramidTileSource}. A page is displayed from the level
+ * which fits its size, and as the page is zoomed in, only the visible tiles of the level matching
+ * the zoom are loaded. Loaded tiles are kept in a cache bounded by the page size, so memory use
+ * doesn't depend on the size of the image.
+ */
+public final class TiledImageLoader<T> extends AsyncImageLoader<T> {
+  private static final int BYTES_PER_PIXEL = 4;
+  private static final int TILE_CACHE_SCREENS = 4;
+
+  private final Context context;
+  private final TileSource.Factory<T> sourceFactory;
+  private final BitmapPool bitmapPool;
+
+  /**
+   * @param sourceFactory opens the {@link TileSource} of an image object
+   */
+  public TiledImageLoader(@NonNull Context context, @NonNull TileSource.Factory<T> sourceFactory) {
+    this.context = context.getApplicationContext();
+    this.sourceFactory = sourceFactory;
+    this.bitmapPool = BitmapPool.getInstance();
+  }
+
+  @NonNull
+  @Override
+  public ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target) {
+    LoadTask task = new LoadTask(request, target);
+    request.getExecutor().execute(task);
+    return task;
+  }
+
+  /**
+   * @return the smallest level which fits the requested size entirely
+   */
+  private static int getBaseLevel(@NonNull TileSource source, int reqWidth, int reqHeight) {
+    int level = 0;
+    while (level + 1 < source.getLevelCount()
+        && (getLevelSize(source.getWidth(), level) > reqWidth
+        || getLevelSize(source.getHeight(), level) > reqHeight)) {
+      level++;
+    }
+    return level;
+  }
+
+  private static int getLevelSize(int size, int level) {
+    return ((size - 1) >> level) + 1;
+  }
+
+  /**
+   * Draws all of the tiles of the level into a single bitmap.
+   */
+  @Nullable
+  private Bitmap composeLevel(@NonNull TileSource source, int level, @NonNull LoadTask task)
+      throws IOException {
+    int width = getLevelSize(source.getWidth(), level);
+    int height = getLevelSize(source.getHeight(), level);
+    Bitmap bitmap = bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+    if (bitmap == null) {
+      bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    } else {
+      bitmap.eraseColor(Color.TRANSPARENT);
+    }
+
+    Canvas canvas = new Canvas(bitmap);
+    int tileSize = source.getTileSize();
+    for (int row = 0; row * tileSize < height; row++) {
+      for (int column = 0; column * tileSize < width; column++) {
+        if (task.isCancelled) {
+          bitmapPool.put(bitmap);
+          return null;
+        }
+
+        Bitmap tile = source.getTile(level, column, row);
+        if (tile != null && Bitmaps.isHardware(tile.getConfig())) {
+          //the level is composed by software, which can't draw hardware bitmaps
+          tile = tile.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        if (tile != null) {
+          canvas.drawBitmap(tile, column * tileSize, row * tileSize, null);
+          bitmapPool.put(tile);
+        }
+      }
+    }
+    return bitmap;
+  }
+
+  private final class LoadTask implements DecodeScheduler.RejectableTask, ImageRequestHandle {
+    private final ImageRequest<T> request;
+    private final ImageTarget target;
+    private volatile boolean isCancelled;
+
+    LoadTask(@NonNull ImageRequest<T> request, @NonNull ImageTarget target) {
+      this.request = request;
+      this.target = target;
+    }
+
+    @Override public void run() {
+      if (isCancelled) {
+        return;
+      }
+
+      int reqWidth = request.getTargetWidth();
+      int reqHeight = request.getTargetHeight();
+      TileSource source = null;
+      Bitmap base;
+      int baseLevel;
+      try {
+        source = sourceFactory.open(request.getImage());
+        baseLevel = getBaseLevel(source, reqWidth, reqHeight);
+        if (baseLevel > 0 && request.skipPrefetch()) {
+          //tiled images are not cached, so the prefetched base level would be thrown away
+          source.close();
+          target.onImageLoadFailed(null);
+          return;
+        }
+        base = composeLevel(source, baseLevel, this);
+      } catch (IOException | RuntimeException e) {
+        if (source != null) {
+          source.close();
+        }
+        if (!isCancelled) {
+          target.onImageLoadFailed(e);
+        }
+        return;
+      }
+
+      if (base == null || isCancelled) {
+        if (base != null) {
+          bitmapPool.put(base);
+        }
+        source.close();
+        return;
+      }
+
+      if (Bitmaps.isHardware(request.getDecodeConfigPolicy().getConfig(!base.hasAlpha()))) {
+        Bitmap hardwareBase = Bitmaps.copyToHardware(base);
+        if (hardwareBase != base) {
+          bitmapPool.put(base);
+          base = hardwareBase;
+        }
+      }
+
+      Drawable drawable;
+      if (baseLevel > 0) {
+        long maxTileBytes = (long) reqWidth * reqHeight * BYTES_PER_PIXEL * TILE_CACHE_SCREENS;
+        drawable = new TiledImageDrawable(base, source,
+            request.newExecutor(ImageRequest.PRIORITY_VISIBLE), bitmapPool,
+            (int) Math.min(Integer.MAX_VALUE, maxTileBytes));
+      } else {
+        //the image fits the page at its full resolution, so there is nothing to zoom into
+        source.close();
+        bitmapPool.track(base);
+        drawable = new BitmapDrawable(context.getResources(), base);
+      }
+      target.onImageLoaded(drawable);
+      //the targets deliver images on the main thread, so they are able to take their leases
+      //before the one of this request is released
+      MainThread.post(() -> bitmapPool.release(drawable));
+    }
+
+    @Override public void onRejected(@NonNull RuntimeException error) {
+      if (!isCancelled) {
+        target.onImageLoadFailed(error);
+      }
+    }
+
+    @Override public void cancel() {
+      isCancelled = true;
+    }
+
+    @Override public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.stfalcon.imageviewer.loader;
+
+import android.widget.ImageView;
+import androidx.annotation.Nullable;
+
+/**
+ * Interface definition for a callback to be invoked when the view the viewer should close to is
+ * needed. It is queried once, when closing starts, so the view doesn't have to be tracked while
+ * the user swipes through the images.
+ */
+public interface TransitionViewResolver {
+  /**
+   * @param position position of the image the viewer is closed from
+   * @return view displaying the image or null if the viewer should be dismissed to the bottom
+   */
+  @Nullable
+  ImageView getTransitionView(int position);
+}
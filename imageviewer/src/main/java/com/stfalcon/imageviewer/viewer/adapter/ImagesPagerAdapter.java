@@ -1,45 +1,74 @@
 package com.stfalcon.imageviewer.viewer.adapter;
 
 import android.content.Context;
+import android.graphics.Matrix;
+import android.graphics.drawable.Drawable;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.github.chrisbanes.photoview.PhotoView;
+import com.stfalcon.imageviewer.common.IntSupplier;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
 import com.stfalcon.imageviewer.common.pager.RecyclingPagerAdapter;
-import com.stfalcon.imageviewer.loader.ImageLoader;
+import com.stfalcon.imageviewer.common.tiles.TiledImageDrawable;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.ImageIdResolver;
+import com.stfalcon.imageviewer.loader.ImageRequest;
+import com.stfalcon.imageviewer.loader.ImageRequestHandle;
+import com.stfalcon.imageviewer.loader.ImageTarget;
+import com.stfalcon.imageviewer.loader.PreviewResolver;
+import com.stfalcon.imageviewer.viewer.request.ImageRequestFactory;
 import java.util.ArrayList;
 import java.util.List;
 
 @RestrictTo(value = RestrictTo.Scope.LIBRARY)
 public final class ImagesPagerAdapter<T>
     extends RecyclingPagerAdapter<ImagesPagerAdapter.ViewHolder> {
+  private static final float DEFAULT_MAXIMUM_SCALE = 3f;
+
   private final Context context;
-  private final ImageLoader<T> imageLoader;
+  private final AsyncImageLoader<T> imageLoader;
+  private final ImageRequestFactory<T> requestFactory;
+  private final BitmapPool bitmapPool;
+  private final IntSupplier currentPosition;
+  @Nullable
+  private final PreviewResolver<T> previewResolver;
+  @Nullable
+  private final ImageIdResolver<T> imageIdResolver;
   private final boolean isZoomingAllowed;
 
   private List<T> images;
-  private final List<ViewHolder> holders = new ArrayList<>();
+  private int previewPosition = -1;
+  private int deferredPosition = -1;
+  @Nullable
+  private Runnable onImageSetListener;
+  @Nullable
+  private Drawable.ConstantState preview;
 
   public ImagesPagerAdapter(@NonNull Context context, @NonNull List<T> images,
-      @NonNull ImageLoader<T> imageLoader, boolean isZoomingAllowed) {
+      @NonNull AsyncImageLoader<T> imageLoader, @NonNull ImageRequestFactory<T> requestFactory,
+      @NonNull BitmapPool bitmapPool, @NonNull IntSupplier currentPosition,
+      @Nullable PreviewResolver<T> previewResolver, @Nullable ImageIdResolver<T> imageIdResolver,
+      boolean isZoomingAllowed) {
     super();
     this.context = context;
     this.imageLoader = imageLoader;
+    this.requestFactory = requestFactory;
+    this.bitmapPool = bitmapPool;
+    this.currentPosition = currentPosition;
+    this.previewResolver = previewResolver;
+    this.imageIdResolver = imageIdResolver;
     this.isZoomingAllowed = isZoomingAllowed;
     this.images = images;
   }
 
   public boolean isScaled(int position) {
-    ViewHolder found = null;
-    for (ViewHolder holder : holders) {
-      if (holder.getPosition() == position) {
-        found = holder;
-        break;
-      }
-    }
-
-    return found != null && found.isScaled();
+    ViewHolder holder = getAttachedViewHolder(position);
+    return holder != null && holder.isScaled();
   }
 
   @NonNull
@@ -50,7 +79,8 @@ public final class ImagesPagerAdapter<T>
     photoView.setOnViewDragListener(
         (dx, dy) -> photoView.setAllowParentInterceptOnEdge(photoView.getScale() == 1f));
     ViewHolder holder = new ViewHolder(photoView);
-    holders.add(holder);
+    photoView.setOnScaleChangeListener(
+        (scaleFactor, focusX, focusY) -> holder.onScaleChanged(scaleFactor));
     return holder;
   }
 
@@ -60,32 +90,238 @@ public final class ImagesPagerAdapter<T>
     holder.bind(position);
   }
 
+  @Override
+  public void onViewRecycled(@NonNull ImagesPagerAdapter.ViewHolder holder) {
+    holder.unbind();
+  }
+
   @Override
   public int getItemCount() {
     return images.size();
   }
 
+  /**
+   * Replaces the images. Pages of the images which are still in the list keep their views, loaded
+   * images and zoom, even if their positions have changed.
+   */
   public void updateImages(@NonNull List<T> images) {
     this.images = images;
     notifyDataSetChanged();
   }
 
-  public void resetScale(int position) {
-    ViewHolder found = null;
-    for (ViewHolder holder : holders) {
-      if (holder.getPosition() == position) {
-        found = holder;
-        break;
+  @Override
+  public int findItemPosition(@NonNull ViewHolder holder) {
+    T image = holder.image;
+    if (image == null) {
+      return POSITION_NONE;
+    }
+
+    int position = findPosition(image, holder.getPosition());
+    //an image with the same ID but different data is displayed anew
+    return position >= 0 && image.equals(images.get(position)) ? position : POSITION_NONE;
+  }
+
+  /**
+   * Images are saved by their stable IDs, so the state of a page survives the move of its image.
+   * Without the IDs the state is saved by the position.
+   */
+  @Override
+  public long getItemId(int position) {
+    if (imageIdResolver == null) {
+      return position;
+    }
+
+    T image = images.get(position);
+    return image != null ? imageIdResolver.getId(image) : NO_ID;
+  }
+
+  /**
+   * Searches the image starting from its previous position, so only a few images are checked when
+   * the list is changed close to the displayed image. The search doesn't go past the images which
+   * are not loaded from their data source yet.
+   *
+   * @return the position of the image or -1 if it is not found
+   */
+  private int findPosition(@NonNull T image, int previousPosition) {
+    int count = images.size();
+    boolean isBeforeSearched = false;
+    boolean isAfterSearched = false;
+    for (int distance = 0; !isBeforeSearched || !isAfterSearched; distance++) {
+      int after = previousPosition + distance;
+      if (!isAfterSearched) {
+        T candidate = after < count ? images.get(after) : null;
+        if (candidate == null) {
+          isAfterSearched = true;
+        } else if (isSameImage(image, candidate)) {
+          return after;
+        }
+      }
+
+      int before = previousPosition - distance - 1;
+      if (!isBeforeSearched && before < count) {
+        //the list may be shorter than the previous position, the search starts from its end then
+        T candidate = before >= 0 ? images.get(before) : null;
+        if (candidate == null) {
+          isBeforeSearched = true;
+        } else if (isSameImage(image, candidate)) {
+          return before;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private boolean isSameImage(@NonNull T image, @NonNull T other) {
+    return imageIdResolver != null ? imageIdResolver.getId(image) == imageIdResolver.getId(other)
+        : image.equals(other);
+  }
+
+  /**
+   * Binds the pages at the positions which were displayed before their images were loaded.
+   */
+  public void onImagesLoaded(int startPosition, int count) {
+    for (ViewHolder holder : getAttachedViewHolders()) {
+      int position = holder.getPosition();
+      if (holder.isWaitingForImage
+          && position >= startPosition && position < startPosition + count) {
+        holder.bind(position);
       }
     }
+  }
+
+  /**
+   * Drops the images of the live pages except the one at the position and the pooled pages. The
+   * dropped images are loaded again by {@link #rebindReleasedPage(int)}.
+   */
+  public void releaseOffscreenPages(int position) {
+    for (ViewHolder holder : getAttachedViewHolders()) {
+      if (holder.getPosition() != position) {
+        holder.release();
+      }
+    }
+    clearPool();
+  }
+
+  /**
+   * Loads the image of the live page at the position if it was dropped by
+   * {@link #releaseOffscreenPages(int)}.
+   */
+  public void rebindReleasedPage(int position) {
+    ViewHolder holder = getAttachedViewHolder(position);
+    if (holder != null && holder.isReleased) {
+      holder.bind(position);
+    }
+  }
+
+  /**
+   * Sets a callback to be invoked when an image is displayed or removed by a page.
+   */
+  public void setOnImageSetListener(@Nullable Runnable listener) {
+    onImageSetListener = listener;
+  }
+
+  /**
+   * @return the images displayed by the live pages
+   */
+  @NonNull
+  public List<Drawable> getDisplayedImages() {
+    List<Drawable> displayed = new ArrayList<>();
+    for (ViewHolder holder : getAttachedViewHolders()) {
+      Drawable drawable = holder.photoView.getDrawable();
+      if (drawable != null) {
+        displayed.add(drawable);
+      }
+    }
+    return displayed;
+  }
+
+  @Nullable
+  public Drawable getDisplayedImage(int position) {
+    ViewHolder holder = getAttachedViewHolder(position);
+    return holder != null ? holder.photoView.getDrawable() : null;
+  }
+
+  /**
+   * @return whether the page at the position displays its full image rather than a preview
+   */
+  public boolean isFullImageShown(int position) {
+    ViewHolder holder = getAttachedViewHolder(position);
+    return holder != null && holder.isFullImageShown;
+  }
+
+  public void resetScale(int position) {
+    ViewHolder holder = getAttachedViewHolder(position);
+    if (holder != null) {
+      holder.resetScale();
+    }
+  }
+
+  /**
+   * Sets an already decoded preview for the page at the position. It is displayed instead of the
+   * resolved one until the full image is loaded.
+   */
+  public void setPreview(int position, @Nullable Drawable drawable) {
+    previewPosition = position;
+    preview = drawable != null ? drawable.getConstantState() : null;
+    ViewHolder holder = getAttachedViewHolder(position);
+    if (holder != null) {
+      holder.showPreview(position);
+    }
+  }
+
+  /**
+   * Keeps the page at the position from loading its image until
+   * {@link #completeDeferredBinding(Drawable)}, so it can take over an image loaded elsewhere.
+   */
+  public void deferBinding(int position) {
+    deferredPosition = position;
+  }
+
+  /**
+   * Displays the image in the deferred page or loads the page image if there is no image.
+   *
+   * @param drawable the page image at the scale 1, which is not displayed by any other view
+   * @return true if the page has taken the image
+   */
+  public boolean completeDeferredBinding(@Nullable Drawable drawable) {
+    int position = deferredPosition;
+    deferredPosition = -1;
+    ViewHolder holder = position >= 0 ? getAttachedViewHolder(position) : null;
+    if (holder == null || !holder.isDeferred) {
+      return false;
+    }
+
+    if (drawable == null || holder.image == null) {
+      holder.bind(position);
+      return false;
+    }
+
+    holder.bind(position, drawable);
+    return true;
+  }
 
-    if (found != null) {
-      found.resetScale();
+  public void cancelRequests() {
+    for (ViewHolder holder : getAttachedViewHolders()) {
+      holder.unbind();
     }
   }
 
   final class ViewHolder extends RecyclingPagerAdapter.ViewHolder {
     private final PhotoView photoView;
+    private int generation;
+    private boolean isFullImageShown;
+    private boolean isWaitingForImage;
+    private boolean isReleased;
+    private boolean isDeferred;
+    @Nullable
+    private T image;
+    @Nullable
+    private T rendition;
+    private float renditionScale = 1f;
+    @Nullable
+    private ImageRequestHandle request;
+    @Nullable
+    private ImageRequestHandle previewRequest;
 
     public boolean isScaled() {
       return photoView.getScale() > 1.0F;
@@ -93,16 +329,249 @@ public final class ImagesPagerAdapter<T>
 
     public void bind(int position) {
       setPosition(position);
-      imageLoader.loadImage(photoView, images.get(position));
+      cancelRequests();
+      isFullImageShown = false;
+      isReleased = false;
+      isDeferred = false;
+      int token = ++generation;
+      int priority = ImageRequestFactory.getPagePriority(position, currentPosition.getAsInt());
+      T image = images.get(position);
+      this.image = image;
+      isWaitingForImage = image == null;
+      if (image == null) {
+        //the image is not loaded from its data source yet, the page is bound again once it is
+        rendition = null;
+        setImage(null);
+        showPreview(position);
+        return;
+      }
+
+      if (position == deferredPosition) {
+        //the page takes over the image loaded for the open transition once it ends
+        isDeferred = true;
+        rendition = null;
+        showPreview(position);
+        return;
+      }
+
+      renditionScale = Math.max(1f, photoView.getScale());
+      rendition = requestFactory.selectRendition(image, renditionScale);
+      request = imageLoader.loadImage(
+          requestFactory.create(rendition, photoView.getScale(), priority),
+          new PageTarget(token, false));
+
+      if (!isFullImageShown && !showPreview(position) && previewResolver != null) {
+        T previewImage = previewResolver.getPreview(image);
+        if (previewImage != null) {
+          previewRequest = imageLoader.loadImage(
+              requestFactory.create(previewImage, 1f, priority), new PageTarget(token, true));
+        }
+      }
+    }
+
+    /**
+     * Binds the page with an already loaded image of it at the scale 1.
+     */
+    void bind(int position, @NonNull Drawable drawable) {
+      setPosition(position);
+      cancelRequests();
+      generation++;
+      isReleased = false;
+      isDeferred = false;
+      isWaitingForImage = false;
+      image = images.get(position);
+      renditionScale = 1f;
+      rendition = image != null ? requestFactory.selectRendition(image, 1f) : null;
+      showFullImage(drawable);
+    }
+
+    public void unbind() {
+      cancelRequests();
+      generation++;
+      isFullImageShown = false;
+      isWaitingForImage = false;
+      isReleased = false;
+      isDeferred = false;
+      image = null;
+      rendition = null;
+      renditionScale = 1f;
+      setImage(null);
+    }
+
+    /**
+     * Drops the image of an off-screen page keeping the page bound to its position.
+     */
+    void release() {
+      unbind();
+      isReleased = true;
+    }
+
+    /**
+     * Steps up to a larger rendition once the displayed one doesn't have enough pixels for the
+     * zoom. Smaller renditions are loaded only when the zoom is reset.
+     */
+    void onScaleChanged(float scaleFactor) {
+      if (requestFactory.hasRenditions() && isAttached() && scaleFactor > 1f
+          && photoView.getScale() > renditionScale) {
+        loadRendition(photoView.getScale());
+      }
+    }
+
+    private void loadRendition(float scale) {
+      renditionScale = scale;
+      if (image == null) {
+        return;
+      }
+
+      T selected = requestFactory.selectRendition(image, scale);
+      if (selected.equals(rendition)) {
+        return;
+      }
+
+      rendition = selected;
+      cancelRequests();
+      request = imageLoader.loadImage(
+          requestFactory.create(selected, scale, ImageRequest.PRIORITY_VISIBLE),
+          new PageTarget(++generation, false));
+    }
+
+    /**
+     * Displays the preview set for the position if the page has no image yet.
+     *
+     * @return true if the preview was displayed
+     */
+    boolean showPreview(int position) {
+      if (position != previewPosition || preview == null || isFullImageShown
+          || photoView.getDrawable() != null) {
+        return false;
+      }
+
+      setImage(preview.newDrawable(context.getResources()));
+      return true;
+    }
+
+    /**
+     * Replaces the preview with the full image keeping the zoom and position the user has set.
+     */
+    private void showFullImage(@NonNull Drawable drawable) {
+      isFullImageShown = true;
+      cancelPreviewRequest();
+      if (photoView.getDrawable() == null) {
+        setImage(drawable);
+        return;
+      }
+
+      Matrix suppMatrix = new Matrix();
+      photoView.getSuppMatrix(suppMatrix);
+      setImage(drawable);
+      photoView.setSuppMatrix(suppMatrix);
+    }
+
+    /**
+     * Displays the image holding a lease of its bitmap, so the bitmap can't get back to the pool
+     * until the page is recycled.
+     */
+    private void setImage(@Nullable Drawable drawable) {
+      Drawable previous = photoView.getDrawable();
+      bitmapPool.acquire(drawable);
+      updateMaximumScale(drawable);
+      photoView.setImageDrawable(drawable);
+      bitmapPool.release(previous);
+      if (onImageSetListener != null && drawable != previous) {
+        onImageSetListener.run();
+      }
+    }
+
+    /**
+     * Allows tiled images to be zoomed in up to their full resolution.
+     */
+    private void updateMaximumScale(@Nullable Drawable drawable) {
+      float maximumScale = DEFAULT_MAXIMUM_SCALE;
+      if (drawable instanceof TiledImageDrawable
+          && photoView.getWidth() > 0 && photoView.getHeight() > 0) {
+        maximumScale = Math.max(maximumScale, Math.max(
+            drawable.getIntrinsicWidth() / (float) photoView.getWidth(),
+            drawable.getIntrinsicHeight() / (float) photoView.getHeight()));
+      }
+      photoView.setMaximumScale(maximumScale);
+    }
+
+    private void cancelRequests() {
+      if (request != null) {
+        request.cancel();
+        request = null;
+      }
+      cancelPreviewRequest();
+    }
+
+    private void cancelPreviewRequest() {
+      if (previewRequest != null) {
+        previewRequest.cancel();
+        previewRequest = null;
+      }
     }
 
     public void resetScale() {
       photoView.setScale(photoView.getMinimumScale(), true);
+      if (requestFactory.hasRenditions() && isAttached() && renditionScale > 1f) {
+        //drops back to the rendition which fits the not zoomed page to free the memory
+        loadRendition(1f);
+      }
     }
 
     public ViewHolder(@NonNull View itemView) {
       super(itemView);
       photoView = (PhotoView) itemView;
     }
+
+    /**
+     * Delivers the loaded image into the page only if the holder was not rebound or recycled since
+     * the request started. A preview is delivered only until the full image is shown.
+     */
+    private final class PageTarget implements ImageTarget {
+      private final int token;
+      private final boolean isPreview;
+
+      PageTarget(int token, boolean isPreview) {
+        this.token = token;
+        this.isPreview = isPreview;
+      }
+
+      @Nullable
+      @Override
+      public ImageView getImageView() {
+        return token == generation ? photoView : null;
+      }
+
+      @Override
+      public void onImageLoaded(@NonNull Drawable drawable) {
+        MainThread.run(() -> {
+          if (token != generation) {
+            return;
+          }
+
+          if (isPreview) {
+            previewRequest = null;
+            if (!isFullImageShown) {
+              setImage(drawable);
+            }
+          } else {
+            request = null;
+            showFullImage(drawable);
+          }
+        });
+      }
+
+      @Override
+      public void onImageLoadFailed(@Nullable Throwable error) {
+        MainThread.run(() -> {
+          if (token == generation && isPreview) {
+            previewRequest = null;
+          } else if (token == generation) {
+            request = null;
+          }
+        });
+      }
+    }
   }
 }
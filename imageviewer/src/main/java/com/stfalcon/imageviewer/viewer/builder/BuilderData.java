@@ -6,10 +6,18 @@ import android.widget.ImageView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.pager.RecyclingPagerAdapter;
 import com.stfalcon.imageviewer.listeners.OnDismissListener;
+import com.stfalcon.imageviewer.listeners.OnFirstFrameListener;
 import com.stfalcon.imageviewer.listeners.OnImageChangeListener;
-import com.stfalcon.imageviewer.loader.ImageLoader;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.DecodeConfigPolicy;
+import com.stfalcon.imageviewer.loader.ImageIdResolver;
+import com.stfalcon.imageviewer.loader.PreviewResolver;
+import com.stfalcon.imageviewer.loader.RenditionResolver;
+import com.stfalcon.imageviewer.loader.TransitionViewResolver;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @RestrictTo(value = RestrictTo.Scope.LIBRARY)
 public final class BuilderData<T> {
@@ -20,6 +28,8 @@ public final class BuilderData<T> {
   @Nullable
   public OnDismissListener onDismissListener;
   @Nullable
+  public OnFirstFrameListener firstFrameListener;
+  @Nullable
   public View overlayView;
   public int imageMarginPixels;
   @NonNull
@@ -27,14 +37,32 @@ public final class BuilderData<T> {
   public boolean shouldStatusBarHide;
   public boolean isZoomingAllowed;
   public boolean isSwipeToDismissAllowed;
+  public int prefetchAhead;
+  public int prefetchBehind;
+  public int pagePoolSize = RecyclingPagerAdapter.DEFAULT_MAX_POOLED_HOLDERS;
+  public long memoryBudgetBytes;
+  public float memoryBudgetFraction;
+  public long openTimeoutMillis;
+  @Nullable
+  public Executor executor;
+  @Nullable
+  public PreviewResolver<T> previewResolver;
+  @Nullable
+  public RenditionResolver<T> renditionResolver;
+  @Nullable
+  public ImageIdResolver<T> imageIdResolver;
+  @NonNull
+  public DecodeConfigPolicy decodeConfigPolicy = DecodeConfigPolicy.ARGB_8888;
   @Nullable
   public ImageView transitionView;
+  @Nullable
+  public TransitionViewResolver transitionViewResolver;
   @NonNull
   public final List<T> images;
   @NonNull
-  public final ImageLoader<T> imageLoader;
+  public final AsyncImageLoader<T> imageLoader;
 
-  public BuilderData(@NonNull List<T> images, @NonNull ImageLoader<T> imageLoader) {
+  public BuilderData(@NonNull List<T> images, @NonNull AsyncImageLoader<T> imageLoader) {
     this.images = images;
     this.imageLoader = imageLoader;
     this.backgroundColor = Color.BLACK;
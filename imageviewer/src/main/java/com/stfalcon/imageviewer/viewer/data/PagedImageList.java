@@ -0,0 +1,186 @@
+package com.stfalcon.imageviewer.viewer.data;
+
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import com.stfalcon.imageviewer.loader.ImageDataSource;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * List of the images of an {@link ImageDataSource} which holds only the chunks around the current
+ * position. An image of a chunk which is not loaded yet is null, reading it starts the loading of
+ * its chunk. The list is used on the main thread only.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class PagedImageList<T> extends AbstractList<T> {
+  private static final String TAG = "PagedImageList";
+  private static final String THREAD_NAME = "ImageViewer-data";
+  public static final int DEFAULT_CHUNK_SIZE = 50;
+  /**
+   * Count of chunks at each side of the current one which are loaded in advance.
+   */
+  private static final int LOADED_CHUNKS_LIMIT = 1;
+  /**
+   * Count of chunks at each side of the current one which are kept in memory, it is larger than
+   * the loaded one so swiping back and forth over a chunk border doesn't reload the chunks.
+   */
+  private static final int KEPT_CHUNKS_LIMIT = 2;
+
+  @Nullable
+  private static Executor executor;
+
+  private final ImageDataSource<T> source;
+  private final int count;
+  private final int chunkSize;
+  private final SparseArray<Chunk> chunks = new SparseArray<>();
+  @Nullable
+  private OnRangeLoadedListener onRangeLoadedListener;
+
+  public PagedImageList(@NonNull ImageDataSource<T> source) {
+    this(source, DEFAULT_CHUNK_SIZE);
+  }
+
+  public PagedImageList(@NonNull ImageDataSource<T> source, int chunkSize) {
+    this.source = source;
+    this.count = Math.max(0, source.getCount());
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  /**
+   * @return the executor shared by all of the lists, a single thread keeps the source from being
+   * queried concurrently
+   */
+  @NonNull
+  private static synchronized Executor getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runnable.run();
+        }, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * @return the image at the position or null if its chunk is not loaded yet
+   */
+  @Nullable
+  @Override
+  public T get(int position) {
+    if (position < 0 || position >= count) {
+      throw new IndexOutOfBoundsException("Position " + position + " of " + count);
+    }
+
+    Chunk chunk = load(position / chunkSize);
+    int offset = position % chunkSize;
+    return chunk.items != null && offset < chunk.items.size() ? chunk.items.get(offset) : null;
+  }
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  public void setOnRangeLoadedListener(@Nullable OnRangeLoadedListener listener) {
+    onRangeLoadedListener = listener;
+  }
+
+  /**
+   * Loads the chunks around the position and drops the ones which are far from it.
+   */
+  public void setCurrentPosition(int position) {
+    int current = position / chunkSize;
+    for (int index = chunks.size() - 1; index >= 0; index--) {
+      if (Math.abs(chunks.keyAt(index) - current) > KEPT_CHUNKS_LIMIT) {
+        chunks.valueAt(index).isCancelled = true;
+        chunks.removeAt(index);
+      }
+    }
+
+    load(current);
+    for (int distance = 1; distance <= LOADED_CHUNKS_LIMIT; distance++) {
+      if (current + distance <= (count - 1) / chunkSize) {
+        load(current + distance);
+      }
+      if (current - distance >= 0) {
+        load(current - distance);
+      }
+    }
+  }
+
+  @NonNull
+  private Chunk load(int index) {
+    Chunk chunk = chunks.get(index);
+    if (chunk == null) {
+      chunk = new Chunk(index);
+      chunks.put(index, chunk);
+      getExecutor().execute(chunk);
+    }
+    return chunk;
+  }
+
+  private void onChunkLoaded(@NonNull Chunk chunk, @Nullable List<T> items) {
+    if (chunks.get(chunk.index) != chunk) {
+      return;
+    }
+
+    if (items == null) {
+      //the chunk is loaded again once one of its images is read
+      chunks.remove(chunk.index);
+      return;
+    }
+
+    chunk.items = items;
+    if (onRangeLoadedListener != null) {
+      int start = chunk.index * chunkSize;
+      onRangeLoadedListener.onRangeLoaded(start, Math.min(chunkSize, count - start));
+    }
+  }
+
+  /**
+   * Interface definition for a callback to be invoked on the main thread when the images of a range
+   * of positions are loaded.
+   */
+  public interface OnRangeLoadedListener {
+    void onRangeLoaded(int startPosition, int count);
+  }
+
+  private final class Chunk implements Runnable {
+    private final int index;
+    @Nullable
+    private List<T> items;
+    private volatile boolean isCancelled;
+
+    Chunk(int index) {
+      this.index = index;
+    }
+
+    @Override public void run() {
+      if (isCancelled) {
+        return;
+      }
+
+      int start = index * chunkSize;
+      List<T> loaded;
+      try {
+        loaded = source.loadRange(start, Math.min(chunkSize, count - start));
+      } catch (RuntimeException e) {
+        Log.w(TAG, "Unable to load images from " + start, e);
+        loaded = null;
+      }
+      List<T> result = loaded;
+      MainThread.post(() -> onChunkLoaded(this, result));
+    }
+  }
+}
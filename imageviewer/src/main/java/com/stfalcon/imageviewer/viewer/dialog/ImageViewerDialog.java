@@ -8,6 +8,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.appcompat.app.AlertDialog;
 import com.stfalcon.imageviewer.R;
+import com.stfalcon.imageviewer.listeners.OnFirstFrameListener;
 import com.stfalcon.imageviewer.listeners.OnImageChangeListener;
 import com.stfalcon.imageviewer.viewer.builder.BuilderData;
 import com.stfalcon.imageviewer.viewer.view.ImageViewerView;
@@ -47,6 +48,18 @@ public final class ImageViewerDialog<T> {
     viewerView.isZoomingAllowed = builderData.isZoomingAllowed;
     viewerView.isSwipeToDismissAllowed = builderData.isSwipeToDismissAllowed;
     viewerView.containerPadding = builderData.containerPaddingPixels;
+    viewerView.prefetchAhead = builderData.prefetchAhead;
+    viewerView.prefetchBehind = builderData.prefetchBehind;
+    viewerView.pagePoolSize = builderData.pagePoolSize;
+    viewerView.memoryBudgetBytes = builderData.memoryBudgetBytes;
+    viewerView.memoryBudgetFraction = builderData.memoryBudgetFraction;
+    viewerView.openTimeoutMillis = builderData.openTimeoutMillis;
+    viewerView.executor = builderData.executor;
+    viewerView.previewResolver = builderData.previewResolver;
+    viewerView.renditionResolver = builderData.renditionResolver;
+    viewerView.decodeConfigPolicy = builderData.decodeConfigPolicy;
+    viewerView.imageIdResolver = builderData.imageIdResolver;
+    viewerView.transitionViewResolver = builderData.transitionViewResolver;
     viewerView.setImagesMargin(builderData.imageMarginPixels);
     viewerView.setOverlayView(builderData.overlayView);
     viewerView.setBackgroundColor(builderData.backgroundColor);
@@ -58,6 +71,12 @@ public final class ImageViewerDialog<T> {
         listener.onImageChange(position);
       }
     };
+    viewerView.onFirstFrame = elapsedMillis -> {
+      OnFirstFrameListener listener = builderData.firstFrameListener;
+      if (listener != null) {
+        listener.onFirstFrame(elapsedMillis);
+      }
+    };
     viewerView.onDismiss = dialog::dismiss;
   }
 
@@ -78,6 +97,10 @@ public final class ImageViewerDialog<T> {
     return viewerView.getCurrentPosition();
   }
 
+  public long getMemoryUsage() {
+    return viewerView.getMemoryUsage();
+  }
+
   public void updateTransitionImage(@Nullable ImageView imageView) {
     viewerView.updateTransitionImage(imageView);
   }
@@ -0,0 +1,98 @@
+package com.stfalcon.imageviewer.viewer.loading;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.cache.BitmapMemoryCache;
+import com.stfalcon.imageviewer.common.cache.ImageCacheKey;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.DecodeConfigPolicy;
+import com.stfalcon.imageviewer.loader.ImageRequest;
+import com.stfalcon.imageviewer.loader.ImageRequestHandle;
+import com.stfalcon.imageviewer.loader.ImageTarget;
+import com.stfalcon.imageviewer.loader.SimpleRequestHandle;
+
+/**
+ * Serves requests from the {@link BitmapMemoryCache} when possible and caches bitmaps delivered by
+ * the wrapped loader. Image objects are used as a part of the cache key, so they should implement
+ * {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class CachingImageLoader<T> extends AsyncImageLoader<T> {
+  private final Resources resources;
+  private final AsyncImageLoader<T> imageLoader;
+  private final BitmapMemoryCache memoryCache;
+
+  public CachingImageLoader(@NonNull Resources resources, @NonNull AsyncImageLoader<T> imageLoader,
+      @NonNull BitmapMemoryCache memoryCache) {
+    this.resources = resources;
+    this.imageLoader = imageLoader;
+    this.memoryCache = memoryCache;
+  }
+
+  @NonNull
+  public static ImageCacheKey createKey(@NonNull ImageRequest<?> request) {
+    DecodeConfigPolicy policy = request.getDecodeConfigPolicy();
+    return new ImageCacheKey(request.getImage(), request.getTargetWidth(),
+        request.getTargetHeight(), policy.getConfig(true), policy.getConfig(false));
+  }
+
+  /**
+   * @return a drawable for the cached image or null if the image is not cached
+   */
+  @Nullable
+  public Drawable getCached(@NonNull ImageRequest<T> request) {
+    Bitmap bitmap = memoryCache.get(createKey(request));
+    return bitmap != null ? new BitmapDrawable(resources, bitmap) : null;
+  }
+
+  @NonNull
+  @Override
+  public ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target) {
+    Drawable cached = getCached(request);
+    if (cached != null) {
+      target.onImageLoaded(cached);
+      return new SimpleRequestHandle();
+    }
+
+    return imageLoader.loadImage(request, new CachingTarget(createKey(request), target));
+  }
+
+  private final class CachingTarget implements ImageTarget {
+    private final ImageCacheKey key;
+    private final ImageTarget target;
+
+    CachingTarget(@NonNull ImageCacheKey key, @NonNull ImageTarget target) {
+      this.key = key;
+      this.target = target;
+    }
+
+    @Nullable
+    @Override
+    public ImageView getImageView() {
+      return target.getImageView();
+    }
+
+    @Override
+    public void onImageLoaded(@NonNull Drawable drawable) {
+      if (drawable instanceof BitmapDrawable) {
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap != null) {
+          memoryCache.put(key, bitmap);
+        }
+      }
+      target.onImageLoaded(drawable);
+    }
+
+    @Override
+    public void onImageLoadFailed(@Nullable Throwable error) {
+      target.onImageLoadFailed(error);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.stfalcon.imageviewer.viewer.loading;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.cache.ImageCacheKey;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.ImageRequest;
+import com.stfalcon.imageviewer.loader.ImageRequestHandle;
+import com.stfalcon.imageviewer.loader.ImageTarget;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares a single request of the wrapped loader between all of the concurrent requests for the
+ * same image and size. The result is fanned out to every target which is still interested in it.
+ * The shared request is cancelled, along with its waiting blocking work, once all of the targets
+ * have cancelled their requests.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class CoalescingImageLoader<T> extends AsyncImageLoader<T> {
+  private final Resources resources;
+  private final AsyncImageLoader<T> imageLoader;
+  private final Map<ImageCacheKey, InFlightRequest> inFlightRequests = new HashMap<>();
+
+  public CoalescingImageLoader(@NonNull Resources resources,
+      @NonNull AsyncImageLoader<T> imageLoader) {
+    this.resources = resources;
+    this.imageLoader = imageLoader;
+  }
+
+  @NonNull
+  @Override
+  public ImageRequestHandle loadImage(@NonNull ImageRequest<T> request,
+      @NonNull ImageTarget target) {
+    ImageCacheKey key = CachingImageLoader.createKey(request);
+    InFlightRequest inFlight;
+    Subscription subscription;
+    synchronized (inFlightRequests) {
+      inFlight = inFlightRequests.get(key);
+      //a prefetch which the loader has skipped can't be joined by a page
+      if (inFlight != null && (request.isPrefetch() || inFlight.request.markDisplayed())) {
+        //the shared work is done as early as the most important of the requests needs it
+        inFlight.request.raisePriority(request.getPriority());
+        return inFlight.subscribe(target);
+      }
+
+      inFlight = new InFlightRequest(key, request);
+      subscription = inFlight.subscribe(target);
+      inFlightRequests.put(key, inFlight);
+    }
+
+    ImageRequestHandle handle = imageLoader.loadImage(request, inFlight);
+    synchronized (inFlightRequests) {
+      inFlight.handle = handle;
+      if (inFlight.subscriptions.isEmpty()) {
+        handle.cancel();
+      }
+    }
+    return subscription;
+  }
+
+  private final class InFlightRequest implements ImageTarget {
+    private final ImageCacheKey key;
+    private final ImageRequest<T> request;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    @Nullable
+    private ImageRequestHandle handle;
+
+    InFlightRequest(@NonNull ImageCacheKey key, @NonNull ImageRequest<T> request) {
+      this.key = key;
+      this.request = request;
+    }
+
+    @NonNull
+    Subscription subscribe(@NonNull ImageTarget target) {
+      Subscription subscription = new Subscription(this, target);
+      subscriptions.add(subscription);
+      return subscription;
+    }
+
+    void unsubscribe(@NonNull Subscription subscription) {
+      synchronized (inFlightRequests) {
+        if (subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+          if (inFlightRequests.get(key) == this) {
+            inFlightRequests.remove(key);
+          }
+          request.cancel();
+          if (handle != null) {
+            handle.cancel();
+          }
+        }
+      }
+    }
+
+    @Nullable
+    @Override
+    public ImageView getImageView() {
+      synchronized (inFlightRequests) {
+        for (Subscription subscription : subscriptions) {
+          ImageView imageView = subscription.target.getImageView();
+          if (imageView != null) {
+            return imageView;
+          }
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void onImageLoaded(@NonNull Drawable drawable) {
+      List<Subscription> finished = finish();
+      for (int index = 0; index < finished.size(); index++) {
+        //a drawable can be displayed in a single view only, so the others get its copies
+        Drawable.ConstantState state = drawable.getConstantState();
+        finished.get(index).target.onImageLoaded(index == 0 || state == null
+            ? drawable : state.newDrawable(resources));
+      }
+    }
+
+    @Override
+    public void onImageLoadFailed(@Nullable Throwable error) {
+      for (Subscription subscription : finish()) {
+        subscription.target.onImageLoadFailed(error);
+      }
+    }
+
+    @NonNull
+    private List<Subscription> finish() {
+      synchronized (inFlightRequests) {
+        if (inFlightRequests.get(key) == this) {
+          inFlightRequests.remove(key);
+        }
+        List<Subscription> finished = new ArrayList<>(subscriptions);
+        subscriptions.clear();
+        return finished;
+      }
+    }
+  }
+
+  private final class Subscription implements ImageRequestHandle {
+    private final InFlightRequest inFlight;
+    private final ImageTarget target;
+    private volatile boolean isCancelled;
+
+    Subscription(@NonNull InFlightRequest inFlight, @NonNull ImageTarget target) {
+      this.inFlight = inFlight;
+      this.target = target;
+    }
+
+    @Override public void cancel() {
+      isCancelled = true;
+      inFlight.unsubscribe(this);
+    }
+
+    @Override public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+}
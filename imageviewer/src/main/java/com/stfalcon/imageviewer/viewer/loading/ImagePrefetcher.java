@@ -0,0 +1,153 @@
+package com.stfalcon.imageviewer.viewer.loading;
+
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.tools.MainThread;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.ImageRequestHandle;
+import com.stfalcon.imageviewer.loader.ImageTarget;
+import com.stfalcon.imageviewer.viewer.request.ImageRequestFactory;
+import java.util.List;
+
+/**
+ * Warms the cache of the given loader for the positions around the live pages without creating
+ * views for them. The window is biased towards the direction the user swipes in.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class ImagePrefetcher<T> {
+  /**
+   * Count of pages at each side of the current one which are kept alive by the pager.
+   */
+  private static final int LIVE_PAGES_LIMIT = 1;
+
+  private final AsyncImageLoader<T> imageLoader;
+  private final ImageRequestFactory<T> requestFactory;
+  private final int ahead;
+  private final int behind;
+  private final SparseArray<PrefetchTarget> requests = new SparseArray<>();
+  private int currentPosition;
+  private int maxCount = Integer.MAX_VALUE;
+
+  /**
+   * @param imageLoader a loader which caches the loaded images
+   * @param ahead count of positions to prefetch in the swipe direction
+   * @param behind count of positions to prefetch in the opposite direction
+   */
+  public ImagePrefetcher(@NonNull AsyncImageLoader<T> imageLoader,
+      @NonNull ImageRequestFactory<T> requestFactory, int ahead, int behind) {
+    this.imageLoader = imageLoader;
+    this.requestFactory = requestFactory;
+    this.ahead = Math.max(0, ahead);
+    this.behind = Math.max(0, behind);
+  }
+
+  /**
+   * Limits the count of the prefetched positions, the ones in the swipe direction are kept first.
+   * The limit is applied by the next {@link #update(List, int, int)}.
+   */
+  public void setMaxCount(int maxCount) {
+    this.maxCount = Math.max(0, maxCount);
+  }
+
+  /**
+   * Moves the prefetch window. Requests for positions which left the window are cancelled.
+   *
+   * @param direction 1 when the user swipes towards the end of the list, -1 otherwise
+   */
+  public void update(@NonNull List<T> images, int position, int direction) {
+    currentPosition = position;
+    int ahead = Math.min(this.ahead, maxCount);
+    int behind = Math.min(this.behind, maxCount - ahead);
+    int sign = direction >= 0 ? 1 : -1;
+    int first = position - LIVE_PAGES_LIMIT - (sign > 0 ? behind : ahead);
+    int last = position + LIVE_PAGES_LIMIT + (sign > 0 ? ahead : behind);
+
+    for (int index = requests.size() - 1; index >= 0; index--) {
+      int requestPosition = requests.keyAt(index);
+      if (requestPosition < first || requestPosition > last
+          || Math.abs(requestPosition - position) <= LIVE_PAGES_LIMIT) {
+        requests.valueAt(index).cancel();
+        requests.removeAt(index);
+      }
+    }
+
+    for (int distance = 1; distance <= Math.max(ahead, behind); distance++) {
+      if (distance <= ahead) {
+        prefetch(images, position + sign * (LIVE_PAGES_LIMIT + distance));
+      }
+      if (distance <= behind) {
+        prefetch(images, position - sign * (LIVE_PAGES_LIMIT + distance));
+      }
+    }
+  }
+
+  public void cancel() {
+    for (int index = 0; index < requests.size(); index++) {
+      requests.valueAt(index).cancel();
+    }
+    requests.clear();
+  }
+
+  private void prefetch(@NonNull List<T> images, int position) {
+    if (position < 0 || position >= images.size() || requests.get(position) != null) {
+      return;
+    }
+
+    T image = images.get(position);
+    if (image == null) {
+      //the image is not loaded from its data source yet, it is prefetched once it is
+      return;
+    }
+
+    PrefetchTarget target = new PrefetchTarget(position);
+    requests.put(position, target);
+    target.request = imageLoader.loadImage(
+        requestFactory.createForPrefetch(image,
+            ImageRequestFactory.getPagePriority(position, currentPosition)), target);
+  }
+
+  private final class PrefetchTarget implements ImageTarget {
+    private final int position;
+    @Nullable
+    private ImageRequestHandle request;
+
+    PrefetchTarget(int position) {
+      this.position = position;
+    }
+
+    void cancel() {
+      if (request != null) {
+        request.cancel();
+      }
+    }
+
+    @Nullable
+    @Override
+    public ImageView getImageView() {
+      return null;
+    }
+
+    @Override
+    public void onImageLoaded(@NonNull Drawable drawable) {
+      finish();
+    }
+
+    @Override
+    public void onImageLoadFailed(@Nullable Throwable error) {
+      //the position is not retried while it stays in the window, the loader might have skipped
+      //it because its image can't be cached
+    }
+
+    private void finish() {
+      MainThread.run(() -> {
+        if (requests.get(position) == this) {
+          requests.remove(position);
+        }
+      });
+    }
+  }
+}
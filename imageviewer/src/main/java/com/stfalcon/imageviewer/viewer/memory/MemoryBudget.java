@@ -0,0 +1,182 @@
+package com.stfalcon.imageviewer.viewer.memory;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.cache.BitmapMemoryCache;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
+import com.stfalcon.imageviewer.common.tiles.TiledImageDrawable;
+import com.stfalcon.imageviewer.common.tools.Bitmaps;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the pixel memory held by the viewer under a limit. The displayed images get the memory
+ * first, the rest of it is split between the memory cache, which holds the prefetched images, and
+ * the bitmap pool. When the displayed images leave too little of it, the viewer prefetches less,
+ * then decodes with a smaller config, and only then drops the pages which are not visible.
+ */
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class MemoryBudget {
+  private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+  /**
+   * Part of the memory left by the displayed images which is given to the bitmap pool.
+   */
+  private static final int POOL_SHARE = 4;
+
+  private final long maxBytes;
+  private final BitmapMemoryCache memoryCache;
+  private final BitmapPool bitmapPool;
+  private long pageBytes;
+
+  /**
+   * @param maxBytes the limit or 0 if the memory is only measured
+   */
+  public MemoryBudget(long maxBytes, @NonNull BitmapMemoryCache memoryCache,
+      @NonNull BitmapPool bitmapPool) {
+    this.maxBytes = Math.max(0, maxBytes);
+    this.memoryCache = memoryCache;
+    this.bitmapPool = bitmapPool;
+  }
+
+  /**
+   * @return the part of the memory class of the application in bytes
+   */
+  public static long getBytes(@NonNull Context context, float fraction) {
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    int memoryClass = activityManager != null ? activityManager.getMemoryClass()
+        : (int) (Runtime.getRuntime().maxMemory() / BYTES_PER_MEGABYTE);
+    return (long) (memoryClass * BYTES_PER_MEGABYTE * Math.max(0f, Math.min(1f, fraction)));
+  }
+
+  public boolean isLimited() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * @param displayed the images of the live pages and the transition view
+   * @return the size of pixel memory held by the displayed images, the memory cache and the
+   * bitmap pool in bytes. Bitmaps which are both displayed and cached are counted once.
+   */
+  public long getUsage(@NonNull List<Drawable> displayed) {
+    Set<Bitmap> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    long usage = getByteCount(displayed, counted);
+    for (Bitmap bitmap : memoryCache.getBitmaps()) {
+      if (counted.add(bitmap)) {
+        usage += Bitmaps.getByteCount(bitmap);
+      }
+    }
+    return usage + bitmapPool.size();
+  }
+
+  /**
+   * Limits the memory cache and the bitmap pool to the memory left by the displayed images. Both
+   * are shared by the viewers, so they keep to the smallest of their limits.
+   *
+   * @param displayed the images of the live pages and the transition view
+   * @param visible the image of the visible page, its size is the one of a prefetched image. The
+   * size of the last one is used while the page is loading.
+   */
+  @NonNull
+  public Allocation update(@NonNull List<Drawable> displayed, @Nullable Drawable visible) {
+    if (!isLimited()) {
+      return Allocation.UNLIMITED;
+    }
+
+    Set<Bitmap> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    long displayedBytes = getByteCount(displayed, counted);
+    //the displayed images are usually cached too, so the cache keeps room for them
+    long cachedDisplayedBytes = 0;
+    for (Bitmap bitmap : memoryCache.getBitmaps()) {
+      if (counted.contains(bitmap)) {
+        cachedDisplayedBytes += Bitmaps.getByteCount(bitmap);
+      }
+    }
+
+    long remaining = maxBytes - displayedBytes;
+    long poolSize = Math.min(bitmapPool.getDefaultMaxSize(), Math.max(0, remaining / POOL_SHARE));
+    long spareBytes = Math.max(0, remaining - poolSize);
+    //the cache is trimmed before the pool, as its evicted bitmaps are put to the pool
+    memoryCache.setLimit(this,
+        (int) Math.min(Integer.MAX_VALUE, spareBytes + cachedDisplayedBytes));
+    bitmapPool.setLimit(this, poolSize);
+
+    long visibleBytes = getByteCount(visible);
+    if (visibleBytes > 0) {
+      pageBytes = visibleBytes;
+    }
+    int prefetchCount = pageBytes > 0
+        ? (int) Math.min(Integer.MAX_VALUE, spareBytes / pageBytes) : Integer.MAX_VALUE;
+    return new Allocation(prefetchCount, prefetchCount == 0, remaining < 0);
+  }
+
+  /**
+   * Removes the limits of this budget from the memory cache and the bitmap pool.
+   */
+  public void reset() {
+    if (isLimited()) {
+      memoryCache.removeLimit(this);
+      bitmapPool.removeLimit(this);
+    }
+  }
+
+  private static long getByteCount(@NonNull List<Drawable> drawables,
+      @NonNull Set<Bitmap> counted) {
+    long byteCount = 0;
+    for (Drawable drawable : drawables) {
+      Bitmap bitmap = drawable instanceof BitmapDrawable
+          ? ((BitmapDrawable) drawable).getBitmap() : null;
+      if (bitmap != null) {
+        byteCount += counted.add(bitmap) ? Bitmaps.getByteCount(bitmap) : 0;
+      } else {
+        byteCount += getByteCount(drawable);
+      }
+    }
+    return byteCount;
+  }
+
+  private static long getByteCount(@Nullable Drawable drawable) {
+    if (drawable instanceof BitmapDrawable) {
+      Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+      return bitmap != null ? Bitmaps.getByteCount(bitmap) : 0;
+    } else if (drawable instanceof TiledImageDrawable) {
+      return ((TiledImageDrawable) drawable).getByteCount();
+    }
+    return 0;
+  }
+
+  /**
+   * Share of the memory the viewer should keep to.
+   */
+  public static final class Allocation {
+    static final Allocation UNLIMITED = new Allocation(Integer.MAX_VALUE, false, false);
+
+    /**
+     * Count of the images which can be prefetched.
+     */
+    public final int prefetchCount;
+    /**
+     * Whether the images should be decoded with a config using less memory.
+     */
+    public final boolean isQualityReduced;
+    /**
+     * Whether the displayed images alone exceed the limit, so the pages which are not visible
+     * should be dropped.
+     */
+    public final boolean isExceeded;
+
+    Allocation(int prefetchCount, boolean isQualityReduced, boolean isExceeded) {
+      this.prefetchCount = prefetchCount;
+      this.isQualityReduced = isQualityReduced;
+      this.isExceeded = isExceeded;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.stfalcon.imageviewer.viewer.request;
+
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import com.stfalcon.imageviewer.loader.DecodeConfigPolicy;
+import com.stfalcon.imageviewer.loader.ImageRequest;
+import com.stfalcon.imageviewer.loader.Rendition;
+import com.stfalcon.imageviewer.loader.RenditionResolver;
+import java.util.List;
+
+@RestrictTo(value = RestrictTo.Scope.LIBRARY)
+public final class ImageRequestFactory<T> {
+  private final View viewport;
+  private final int[] containerPadding;
+  private final DecodeScheduler scheduler;
+  private DecodeConfigPolicy decodeConfigPolicy;
+  @Nullable
+  private final RenditionResolver<T> renditionResolver;
+
+  /**
+   * @param viewport a view which covers the whole viewer area
+   * @param containerPadding `start`, `top`, `end` and `bottom` padding of the images container
+   * @param scheduler a scheduler for the blocking work of the requests
+   * @param decodeConfigPolicy a policy which chooses the config of the decoded bitmaps
+   * @param renditionResolver lists the sizes the page images are available in
+   */
+  public ImageRequestFactory(@NonNull View viewport, @NonNull int[] containerPadding,
+      @NonNull DecodeScheduler scheduler, @NonNull DecodeConfigPolicy decodeConfigPolicy,
+      @Nullable RenditionResolver<T> renditionResolver) {
+    this.viewport = viewport;
+    this.containerPadding = containerPadding;
+    this.scheduler = scheduler;
+    this.decodeConfigPolicy = decodeConfigPolicy;
+    this.renditionResolver = renditionResolver;
+  }
+
+  /**
+   * Changes the policy of the requests created after it.
+   */
+  public void setDecodeConfigPolicy(@NonNull DecodeConfigPolicy decodeConfigPolicy) {
+    this.decodeConfigPolicy = decodeConfigPolicy;
+  }
+
+  public boolean hasRenditions() {
+    return renditionResolver != null;
+  }
+
+  /**
+   * @return priority of the request for the page at the position
+   */
+  public static int getPagePriority(int position, int currentPosition) {
+    int distance = Math.abs(position - currentPosition);
+    return distance == 0 ? ImageRequest.PRIORITY_VISIBLE
+        : ImageRequest.PRIORITY_NEIGHBOUR + distance - 1;
+  }
+
+  /**
+   * Creates a request for the image of a page, the image is replaced with its rendition which
+   * fits the page at the scale.
+   */
+  @NonNull
+  public ImageRequest<T> createForPage(@NonNull T image, float scale, int priority) {
+    return create(selectRendition(image, scale), scale, priority);
+  }
+
+  /**
+   * Creates a request which only warms the caches for the image of a page which is not displayed
+   * yet.
+   */
+  @NonNull
+  public ImageRequest<T> createForPrefetch(@NonNull T image, int priority) {
+    ImageRequest<T> request = createForPage(image, 1f, priority);
+    request.markPrefetch();
+    return request;
+  }
+
+  @NonNull
+  public ImageRequest<T> create(@NonNull T image, float scale, int priority) {
+    return new ImageRequest<>(image, getPageWidth(), getPageHeight(), containerPadding,
+        viewport.getResources().getDisplayMetrics().density, scale, priority, decodeConfigPolicy,
+        scheduler);
+  }
+
+  /**
+   * @return the smallest rendition of the image which has enough pixels to cover the page at the
+   * scale or the largest one if none of them has. The image itself if it has no renditions.
+   */
+  @NonNull
+  public T selectRendition(@NonNull T image, float scale) {
+    List<Rendition<T>> renditions =
+        renditionResolver != null ? renditionResolver.getRenditions(image) : null;
+    if (renditions == null || renditions.isEmpty()) {
+      return image;
+    }
+
+    int pageWidth = getPageWidth();
+    int pageHeight = getPageHeight();
+    Rendition<T> selected = null;
+    boolean isSelectedCovering = false;
+    for (Rendition<T> rendition : renditions) {
+      //a page displays the image fitted into it, so the scale of the rendition is the smaller one
+      float renditionScale = scale * Math.min(pageWidth / (float) rendition.getWidth(),
+          pageHeight / (float) rendition.getHeight());
+      boolean isCovering = renditionScale <= 1f;
+      long area = getArea(rendition);
+      if (selected == null
+          || isCovering && (!isSelectedCovering || area < getArea(selected))
+          || !isCovering && !isSelectedCovering && area > getArea(selected)) {
+        selected = rendition;
+        isSelectedCovering = isCovering;
+      }
+    }
+    return selected.getImage();
+  }
+
+  private int getPageWidth() {
+    int width = viewport.getWidth() > 0
+        ? viewport.getWidth() : viewport.getResources().getDisplayMetrics().widthPixels;
+    return Math.max(1, width - containerPadding[0] - containerPadding[2]);
+  }
+
+  private int getPageHeight() {
+    int height = viewport.getHeight() > 0
+        ? viewport.getHeight() : viewport.getResources().getDisplayMetrics().heightPixels;
+    return Math.max(1, height - containerPadding[1] - containerPadding[3]);
+  }
+
+  private static long getArea(@NonNull Rendition<?> rendition) {
+    return (long) rendition.getWidth() * rendition.getHeight();
+  }
+}
@@ -1,8 +1,10 @@
 package com.stfalcon.imageviewer.viewer.view;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.graphics.drawable.BitmapDrawable;
+import android.content.res.Configuration;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
@@ -19,15 +21,38 @@ import androidx.core.util.Consumer;
 import androidx.core.view.GestureDetectorCompat;
 import androidx.viewpager.widget.ViewPager;
 import com.stfalcon.imageviewer.R;
+import com.stfalcon.imageviewer.common.cache.BitmapMemoryCache;
+import com.stfalcon.imageviewer.common.cache.BitmapPool;
 import com.stfalcon.imageviewer.common.gestures.direction.SwipeDirection;
 import com.stfalcon.imageviewer.common.gestures.direction.SwipeDirectionDetector;
 import com.stfalcon.imageviewer.common.gestures.dismiss.SwipeToDismissHandler;
 import com.stfalcon.imageviewer.common.pager.MultiTouchViewPager;
+import com.stfalcon.imageviewer.common.pager.RecyclingPagerAdapter;
+import com.stfalcon.imageviewer.common.scheduler.DecodeScheduler;
+import com.stfalcon.imageviewer.common.tools.Drawables;
+import com.stfalcon.imageviewer.common.tools.MainThread;
 import com.stfalcon.imageviewer.common.tools.Views;
-import com.stfalcon.imageviewer.loader.ImageLoader;
+import com.stfalcon.imageviewer.loader.AsyncImageLoader;
+import com.stfalcon.imageviewer.loader.DecodeConfigPolicy;
+import com.stfalcon.imageviewer.loader.ImageIdResolver;
+import com.stfalcon.imageviewer.loader.ImageLoaderAdapter;
+import com.stfalcon.imageviewer.loader.ImageRequest;
+import com.stfalcon.imageviewer.loader.ImageRequestHandle;
+import com.stfalcon.imageviewer.loader.ImageTarget;
+import com.stfalcon.imageviewer.loader.PreviewResolver;
+import com.stfalcon.imageviewer.loader.RenditionResolver;
+import com.stfalcon.imageviewer.loader.TransitionViewResolver;
 import com.stfalcon.imageviewer.viewer.adapter.ImagesPagerAdapter;
+import com.stfalcon.imageviewer.viewer.data.PagedImageList;
+import com.stfalcon.imageviewer.viewer.loading.CachingImageLoader;
+import com.stfalcon.imageviewer.viewer.loading.CoalescingImageLoader;
+import com.stfalcon.imageviewer.viewer.loading.ImagePrefetcher;
+import com.stfalcon.imageviewer.viewer.memory.MemoryBudget;
+import com.stfalcon.imageviewer.viewer.request.ImageRequestFactory;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @RestrictTo(value = RestrictTo.Scope.LIBRARY)
 public final class ImageViewerView<T> extends RelativeLayout {
@@ -36,8 +61,21 @@ public final class ImageViewerView<T> extends RelativeLayout {
 
   public @Nullable Runnable onDismiss;
   public @Nullable Consumer<Integer> onPageChange;
+  public @Nullable Consumer<Long> onFirstFrame;
 
   public @NonNull int[] containerPadding = new int[] {0, 0, 0, 0};
+  public int prefetchAhead;
+  public int prefetchBehind;
+  public int pagePoolSize = RecyclingPagerAdapter.DEFAULT_MAX_POOLED_HOLDERS;
+  public @Nullable Executor executor;
+  public @Nullable PreviewResolver<T> previewResolver;
+  public @Nullable RenditionResolver<T> renditionResolver;
+  public @NonNull DecodeConfigPolicy decodeConfigPolicy = DecodeConfigPolicy.ARGB_8888;
+  public @Nullable ImageIdResolver<T> imageIdResolver;
+  public @Nullable TransitionViewResolver transitionViewResolver;
+  public long memoryBudgetBytes;
+  public float memoryBudgetFraction;
+  public long openTimeoutMillis;
 
   private @Nullable View overlayView;
 
@@ -63,11 +101,41 @@ public final class ImageViewerView<T> extends RelativeLayout {
   private @Nullable SwipeDirection swipeDirection;
 
   private @NonNull List<T> images = Collections.emptyList();
-  private @Nullable ImageLoader<T> imageLoader;
+  private @Nullable AsyncImageLoader<T> imageLoader;
+  private @Nullable ImageRequestFactory<T> requestFactory;
+  private @Nullable ImagePrefetcher<T> prefetcher;
+  private int swipeOrientation = 1;
+  private int prefetchPosition;
   private @NonNull TransitionImageAnimator transitionImageAnimator;
+  private @Nullable ImageRequestHandle transitionImageRequest;
+  private int transitionImageGeneration;
+  private boolean isTransitionImageLoaded;
+  private boolean isImageHandoffEnabled;
+  private @Nullable MemoryBudget memoryBudget;
+  private int prefetchLimit = Integer.MAX_VALUE;
+  private boolean isApplyingMemoryBudget;
+  private long openTimeMillis;
+  private boolean isFirstFrameReported;
+  private boolean isWaitingForTransitionImage;
+  private final Runnable openTimeout = this::stopWaitingForTransitionImage;
 
   private int startPosition;
 
+  private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+    @Override public void onTrimMemory(int level) {
+      if (level >= TRIM_MEMORY_RUNNING_LOW) {
+        releaseMemory();
+      }
+    }
+
+    @Override public void onLowMemory() {
+      releaseMemory();
+    }
+
+    @Override public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+  };
+
   public ImageViewerView(Context context) {
     this(context, null);
   }
@@ -90,7 +158,26 @@ public final class ImageViewerView<T> extends RelativeLayout {
 
     imagesPager = findViewById(R.id.imagesPager);
     imagesPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+      @Override public void onPageScrolled(int position, float positionOffset,
+          int positionOffsetPixels) {
+        int current = getCurrentPosition();
+        if (positionOffset > 0f && imagesAdapter != null) {
+          //a page released on low memory is loaded again once the user swipes to it. Only the
+          //page being revealed is loaded, the other ones would be released again once the
+          //swipe settles.
+          imagesAdapter.rebindReleasedPage(position < current ? position : position + 1);
+        }
+        if (positionOffset > 0f && updateSwipeOrientation(position < current ? -1 : 1)) {
+          prefetch(current);
+        }
+      }
+
       @Override public void onPageSelected(int position) {
+        if (position != prefetchPosition) {
+          updateSwipeOrientation(position < prefetchPosition ? -1 : 1);
+        }
+        prefetch(position);
+
         if (externalTransitionImageView != null) {
           externalTransitionImageView.setVisibility(
               isAtStartPosition() ? View.INVISIBLE : View.VISIBLE);
@@ -132,7 +219,8 @@ public final class ImageViewerView<T> extends RelativeLayout {
     }
 
     //noinspection ConstantConditions
-    if (transitionImageAnimator == null || transitionImageAnimator.isAnimating) {
+    if (transitionImageAnimator == null || transitionImageAnimator.isAnimating
+        || isWaitingForTransitionImage) {
       return true;
     }
     //one more tiny kludge to prevent single tap a one-finger zoom which is broken by the SDK
@@ -152,35 +240,91 @@ public final class ImageViewerView<T> extends RelativeLayout {
     return isScaled() ? super.dispatchTouchEvent(event) : handleTouchIfNotScaled(event);
   }
 
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    getContext().getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+    applyMemoryBudget();
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    getContext().getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+    isWaitingForTransitionImage = false;
+    MainThread.cancel(openTimeout);
+    if (memoryBudget != null) {
+      memoryBudget.reset();
+    }
+    cancelTransitionImageRequest();
+    setTransitionImage(null);
+    if (prefetcher != null) {
+      prefetcher.cancel();
+    }
+    if (imagesAdapter != null) {
+      imagesAdapter.cancelRequests();
+    }
+  }
+
   @Override
   public void setBackgroundColor(int color) {
     findViewById(R.id.backgroundView).setBackgroundColor(color);
   }
 
   public void setImages(@NonNull List<T> images, int startPosition,
-      @NonNull ImageLoader<T> imageLoader) {
-    this.images = images;
-    this.imageLoader = imageLoader;
-    imagesAdapter = new ImagesPagerAdapter<>(getContext(), images, imageLoader, isZoomingAllowed);
+      @NonNull AsyncImageLoader<T> imageLoader) {
+    setImageList(images);
+    //plain loaders set images into views by themselves, so each view needs its own request
+    AsyncImageLoader<T> sharedLoader = imageLoader instanceof ImageLoaderAdapter ? imageLoader
+        : new CoalescingImageLoader<>(getResources(), imageLoader);
+    this.imageLoader = new CachingImageLoader<>(getResources(), sharedLoader,
+        BitmapMemoryCache.getInstance());
+    //plain loaders reset the zoom of the page when they set an image, so they get no previews
+    //and renditions
+    boolean isPlainLoader = imageLoader instanceof ImageLoaderAdapter;
+    this.requestFactory = new ImageRequestFactory<>(rootContainer, containerPadding,
+        executor != null ? new DecodeScheduler(executor, DecodeScheduler.getDefaultConcurrency())
+            : DecodeScheduler.getInstance(),
+        decodeConfigPolicy, isPlainLoader ? null : renditionResolver);
+    imagesAdapter = new ImagesPagerAdapter<>(getContext(), images, this.imageLoader,
+        requestFactory, BitmapPool.getInstance(), imagesPager::getCurrentItem,
+        isPlainLoader ? null : previewResolver, imageIdResolver, isZoomingAllowed);
+    imagesAdapter.setMaxPooledViewHolders(pagePoolSize);
+    memoryBudget = new MemoryBudget(memoryBudgetBytes > 0 ? memoryBudgetBytes
+        : memoryBudgetFraction > 0f ? MemoryBudget.getBytes(getContext(), memoryBudgetFraction) : 0,
+        BitmapMemoryCache.getInstance(), BitmapPool.getInstance());
+    imagesAdapter.setOnImageSetListener(this::onPageImageSet);
+    //plain loaders set images into views by themselves, so their images can't be handed off
+    isImageHandoffEnabled = !isPlainLoader;
+    if (isImageHandoffEnabled) {
+      imagesAdapter.deferBinding(startPosition);
+    }
+    if (prefetchAhead > 0 || prefetchBehind > 0) {
+      prefetcher = new ImagePrefetcher<>(this.imageLoader, requestFactory,
+          prefetchAhead, prefetchBehind);
+    }
     imagesPager.setAdapter(imagesAdapter);
     setStartPosition(startPosition);
   }
 
   public void open(@Nullable ImageView transitionImageView, boolean animate) {
+    openTimeMillis = SystemClock.uptimeMillis();
+    isFirstFrameReported = false;
     prepareViewsForTransition();
 
     externalTransitionImageView = transitionImageView;
 
-    if (imageLoader != null) {
-      imageLoader.loadImage(this.transitionImageView, images.get(startPosition));
-    }
+    loadTransitionImage();
+    prefetch(startPosition);
 
-    copyBitmapFrom(this.transitionImageView, transitionImageView);
+    shareImageFrom(transitionImageView);
     transitionImageAnimator = createTransitionImageAnimator(transitionImageView);
     swipeDismissHandler = createSwipeToDismissHandler();
 
     rootContainer.setOnTouchListener(swipeDismissHandler);
-    if (animate) {
+    if (animate && shouldWaitForTransitionImage()) {
+      waitForTransitionImage();
+    } else if (animate) {
       animateOpen();
     } else {
       prepareViewsForViewer();
@@ -188,6 +332,17 @@ public final class ImageViewerView<T> extends RelativeLayout {
   }
 
   public void close() {
+    if (isWaitingForTransitionImage) {
+      //nothing is displayed yet, so there is nothing to animate
+      isWaitingForTransitionImage = false;
+      MainThread.cancel(openTimeout);
+      if (onDismiss != null) {
+        onDismiss.run();
+      }
+      return;
+    }
+
+    resolveTransitionView();
     if (isShouldDismissToBottom()) {
       swipeDismissHandler.initiateDismissToBottom();
     } else {
@@ -196,10 +351,11 @@ public final class ImageViewerView<T> extends RelativeLayout {
   }
 
   public void updateImages(@NonNull List<T> images) {
-    this.images = images;
+    setImageList(images);
     if (imagesAdapter != null) {
       imagesAdapter.updateImages(images);
     }
+    prefetch(getCurrentPosition());
   }
 
   public void updateTransitionImage(@Nullable ImageView imageView) {
@@ -214,8 +370,28 @@ public final class ImageViewerView<T> extends RelativeLayout {
     externalTransitionImageView = imageView;
     setStartPosition(getCurrentPosition());
     transitionImageAnimator = createTransitionImageAnimator(imageView);
-    if (imageLoader != null) {
-      imageLoader.loadImage(transitionImageView, images.get(startPosition));
+    if (isImageHandoffEnabled) {
+      //the close transition takes the image of the page, so nothing is loaded until then
+      cancelTransitionImageRequest();
+      isTransitionImageLoaded = false;
+      setTransitionImage(null);
+    } else {
+      loadTransitionImage();
+    }
+  }
+
+  /**
+   * Asks the resolver for the view of the current image when closing starts, so the close
+   * transition goes back to it.
+   */
+  private void resolveTransitionView() {
+    if (transitionViewResolver == null) {
+      return;
+    }
+
+    ImageView imageView = transitionViewResolver.getTransitionView(getCurrentPosition());
+    if (imageView != externalTransitionImageView || !isAtStartPosition()) {
+      updateTransitionImage(imageView);
     }
   }
 
@@ -225,6 +401,186 @@ public final class ImageViewerView<T> extends RelativeLayout {
     }
   }
 
+  private boolean updateSwipeOrientation(int orientation) {
+    boolean isChanged = swipeOrientation != orientation;
+    swipeOrientation = orientation;
+    return isChanged;
+  }
+
+  private void setImageList(@NonNull List<T> images) {
+    if (this.images instanceof PagedImageList) {
+      ((PagedImageList<T>) this.images).setOnRangeLoadedListener(null);
+    }
+    this.images = images;
+    if (images instanceof PagedImageList) {
+      ((PagedImageList<T>) images).setOnRangeLoadedListener(this::onImagesLoaded);
+    }
+  }
+
+  private void onImagesLoaded(int startPosition, int count) {
+    if (imagesAdapter != null) {
+      imagesAdapter.onImagesLoaded(startPosition, count);
+    }
+    prefetch(getCurrentPosition());
+    if (this.startPosition >= startPosition && this.startPosition < startPosition + count
+        && transitionImageRequest == null && transitionImageView.getDrawable() == null) {
+      loadTransitionImage();
+    }
+  }
+
+  private void prefetch(int position) {
+    prefetchPosition = position;
+    if (images instanceof PagedImageList) {
+      //keeps the images around the position loaded from their data source
+      ((PagedImageList<T>) images).setCurrentPosition(position);
+    }
+    if (prefetcher != null) {
+      prefetcher.update(images, position, swipeOrientation);
+    }
+  }
+
+  private void loadTransitionImage() {
+    cancelTransitionImageRequest();
+    isTransitionImageLoaded = false;
+    T image = startPosition < images.size() ? images.get(startPosition) : null;
+    if (imageLoader != null && requestFactory != null && image != null) {
+      transitionImageRequest = imageLoader.loadImage(
+          requestFactory.createForPage(image, 1f,
+              ImageRequest.PRIORITY_TRANSITION),
+          new TransitionImageTarget(transitionImageGeneration));
+    }
+  }
+
+  private void cancelTransitionImageRequest() {
+    transitionImageGeneration++;
+    if (transitionImageRequest != null) {
+      transitionImageRequest.cancel();
+      transitionImageRequest = null;
+    }
+  }
+
+  private void setTransitionImage(@Nullable Drawable drawable) {
+    Drawable previous = transitionImageView.getDrawable();
+    BitmapPool.getInstance().acquire(drawable);
+    transitionImageView.setImageDrawable(drawable);
+    BitmapPool.getInstance().release(previous);
+    applyMemoryBudget();
+  }
+
+  /**
+   * @return the size of pixel memory held by the viewer in bytes
+   */
+  public long getMemoryUsage() {
+    return memoryBudget != null ? memoryBudget.getUsage(getDisplayedImages()) : 0;
+  }
+
+  /**
+   * Fits the memory cache and the bitmap pool into the memory left by the displayed images. When
+   * it is not enough, fewer images are prefetched, then images are decoded with a smaller config,
+   * and then the pages which are not visible are dropped.
+   */
+  private void applyMemoryBudget() {
+    if (memoryBudget == null || !memoryBudget.isLimited() || imagesAdapter == null
+        || requestFactory == null || isApplyingMemoryBudget) {
+      return;
+    }
+
+    isApplyingMemoryBudget = true;
+    MemoryBudget.Allocation allocation = memoryBudget.update(getDisplayedImages(),
+        imagesAdapter.getDisplayedImage(getCurrentPosition()));
+    requestFactory.setDecodeConfigPolicy(
+        allocation.isQualityReduced && decodeConfigPolicy == DecodeConfigPolicy.ARGB_8888
+            ? DecodeConfigPolicy.RGB_565_IF_OPAQUE : decodeConfigPolicy);
+    if (prefetcher != null && allocation.prefetchCount != prefetchLimit) {
+      prefetchLimit = allocation.prefetchCount;
+      prefetcher.setMaxCount(prefetchLimit);
+      prefetch(prefetchPosition);
+    }
+    //pages are not dropped while the user swipes, as they would be loaded again right away
+    if (allocation.isExceeded && imagesPager.isIdle()) {
+      imagesAdapter.releaseOffscreenPages(getCurrentPosition());
+    }
+    isApplyingMemoryBudget = false;
+  }
+
+  @NonNull
+  private List<Drawable> getDisplayedImages() {
+    List<Drawable> displayed = imagesAdapter != null
+        ? imagesAdapter.getDisplayedImages() : new ArrayList<>();
+    if (transitionImageView.getDrawable() != null) {
+      displayed.add(transitionImageView.getDrawable());
+    }
+    return displayed;
+  }
+
+  /**
+   * Keeps only the image of the visible page, dropping the images of the other pages, the
+   * prefetched images and the pooled bitmaps.
+   */
+  private void releaseMemory() {
+    if (prefetcher != null) {
+      prefetcher.cancel();
+    }
+    if (imagesAdapter != null) {
+      imagesAdapter.releaseOffscreenPages(getCurrentPosition());
+    }
+    //evicted images are put to the pool, so it is cleared after the cache
+    BitmapMemoryCache.getInstance().clear();
+    BitmapPool.getInstance().clear();
+  }
+
+  /**
+   * @return whether the open transition should wait for the transition image, which is loading
+   * and will be reported as loaded
+   */
+  private boolean shouldWaitForTransitionImage() {
+    return openTimeoutMillis > 0 && isImageHandoffEnabled && !isTransitionImageLoaded
+        && transitionImageRequest != null && Views.isRectVisible(externalTransitionImageView);
+  }
+
+  /**
+   * Keeps the viewer hidden until the transition image is loaded or the timeout passes. The main
+   * thread is not blocked meanwhile, and the external view stays in place.
+   */
+  private void waitForTransitionImage() {
+    isWaitingForTransitionImage = true;
+    rootContainer.setVisibility(View.INVISIBLE);
+    MainThread.postDelayed(openTimeout, openTimeoutMillis);
+  }
+
+  private void stopWaitingForTransitionImage() {
+    if (!isWaitingForTransitionImage) {
+      return;
+    }
+
+    isWaitingForTransitionImage = false;
+    MainThread.cancel(openTimeout);
+    rootContainer.setVisibility(View.VISIBLE);
+    animateOpen();
+  }
+
+  private void onPageImageSet() {
+    if (imagesAdapter != null && imagesAdapter.isFullImageShown(startPosition)) {
+      reportFirstFrame();
+    }
+    applyMemoryBudget();
+  }
+
+  /**
+   * Reports the time from opening the viewer to the first decoded image of the start position,
+   * whether the transition view or the page displays it.
+   */
+  private void reportFirstFrame() {
+    if (isFirstFrameReported || openTimeMillis == 0) {
+      return;
+    }
+
+    isFirstFrameReported = true;
+    if (onFirstFrame != null) {
+      onFirstFrame.accept(SystemClock.uptimeMillis() - openTimeMillis);
+    }
+  }
+
   private void animateOpen() {
     transitionImageAnimator.animateOpen(containerPadding, duration -> {
       Views.animateAlpha(backgroundView, 0f, 1f, duration);
@@ -235,6 +591,9 @@ public final class ImageViewerView<T> extends RelativeLayout {
   }
 
   private void animateClose() {
+    if (isImageHandoffEnabled) {
+      handOffPageImage();
+    }
     prepareViewsForTransition();
     Views.applyMargin(dismissContainer, 0, 0, 0, 0);
 
@@ -258,6 +617,42 @@ public final class ImageViewerView<T> extends RelativeLayout {
   private void prepareViewsForViewer() {
     transitionImageContainer.setVisibility(View.GONE);
     imagesPager.setVisibility(View.VISIBLE);
+    if (isImageHandoffEnabled && imagesAdapter != null) {
+      handOffTransitionImage();
+    }
+  }
+
+  /**
+   * Moves the image loaded for the open transition to the start page, so the image is decoded
+   * once for both of them. The bitmap is shared rather than copied.
+   */
+  private void handOffTransitionImage() {
+    Drawable transitionImage = isTransitionImageLoaded ? transitionImageView.getDrawable() : null;
+    Drawable.ConstantState state =
+        transitionImage != null ? transitionImage.getConstantState() : null;
+    //the page loads the image itself if it is not loaded yet, the transition view doesn't need
+    //it until the close transition anyway
+    imagesAdapter.completeDeferredBinding(state != null ? state.newDrawable(getResources()) : null);
+    cancelTransitionImageRequest();
+    isTransitionImageLoaded = false;
+    setTransitionImage(null);
+  }
+
+  /**
+   * Moves the image of the current page back to the transition view for the close transition.
+   * The image is shared rather than loaded again.
+   */
+  private void handOffPageImage() {
+    Drawable pageImage =
+        imagesAdapter != null ? imagesAdapter.getDisplayedImage(getCurrentPosition()) : null;
+    Drawable shared = pageImage != null && isAtStartPosition() ? Drawables.share(pageImage,
+        getResources(), imagesPager.getWidth(), imagesPager.getHeight()) : null;
+    if (shared != null) {
+      cancelTransitionImageRequest();
+      setTransitionImage(shared);
+    } else if (transitionImageView.getDrawable() == null && transitionImageRequest == null) {
+      loadTransitionImage();
+    }
   }
 
   private boolean handleTouchIfNotScaled(MotionEvent event) {
@@ -391,15 +786,69 @@ public final class ImageViewerView<T> extends RelativeLayout {
 
   private SwipeToDismissHandler createSwipeToDismissHandler() {
     return new SwipeToDismissHandler(dismissContainer, this::animateClose,
-        this::handleSwipeViewMove, this::isShouldDismissToBottom);
+        this::handleSwipeViewMove, () -> {
+          //queried once the swipe is going to dismiss the viewer
+          resolveTransitionView();
+          return isShouldDismissToBottom();
+        });
+  }
+
+  /**
+   * Displays the image of the target in the transition view, so the open transition starts from
+   * the already decoded pixels. The image is shared rather than copied.
+   */
+  private void shareImageFrom(@Nullable ImageView target) {
+    Drawable drawable = target != null ? target.getDrawable() : null;
+    Drawable shared = drawable != null
+        ? Drawables.share(drawable, getResources(), target.getWidth(), target.getHeight()) : null;
+    if (shared == null) {
+      return;
+    }
+
+    if (!isTransitionImageLoaded) {
+      setTransitionImage(shared);
+    }
+    if (imagesAdapter != null) {
+      //the thumbnail is already decoded, so it serves as a preview of the start page
+      imagesAdapter.setPreview(startPosition, shared);
+    }
   }
 
-  private static void copyBitmapFrom(@NonNull ImageView dest, @Nullable ImageView target) {
-    if (target != null) {
-      Drawable drawable = target.getDrawable();
-      if (drawable != null && drawable instanceof BitmapDrawable) {
-        dest.setImageBitmap(((BitmapDrawable) drawable).getBitmap());
-      }
+  private final class TransitionImageTarget implements ImageTarget {
+    private final int token;
+
+    TransitionImageTarget(int token) {
+      this.token = token;
+    }
+
+    @Nullable
+    @Override
+    public ImageView getImageView() {
+      return token == transitionImageGeneration ? transitionImageView : null;
+    }
+
+    @Override
+    public void onImageLoaded(@NonNull Drawable drawable) {
+      MainThread.run(() -> {
+        if (token == transitionImageGeneration) {
+          transitionImageRequest = null;
+          setTransitionImage(drawable);
+          isTransitionImageLoaded = true;
+          reportFirstFrame();
+          stopWaitingForTransitionImage();
+        }
+      });
+    }
+
+    @Override
+    public void onImageLoadFailed(@Nullable Throwable error) {
+      MainThread.run(() -> {
+        if (token == transitionImageGeneration) {
+          transitionImageRequest = null;
+          //the image won't come, so the transition starts with whatever is displayed
+          stopWaitingForTransitionImage();
+        }
+      });
     }
   }
 }
@@ -1,8 +1,15 @@
 package com.stfalcon.imageviewer.viewer.view;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build.VERSION;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
@@ -10,12 +17,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.core.util.Consumer;
-import androidx.transition.AutoTransition;
-import androidx.transition.Transition;
-import androidx.transition.TransitionListenerAdapter;
-import androidx.transition.TransitionManager;
 import com.stfalcon.imageviewer.common.tools.Views;
 
+/**
+ * Animates the transition image between the external view and the viewer. The layout is changed
+ * once before the animation, then the image container is only scaled, translated and clipped on a
+ * hardware layer, so no frame of the animation measures or lays out the views.
+ */
 @RestrictTo(value = RestrictTo.Scope.LIBRARY)
 public final class TransitionImageAnimator {
   private static final long TRANSITION_DURATION_OPEN = 200L;
@@ -26,6 +34,8 @@ public final class TransitionImageAnimator {
   private final ImageView externalImage;
   private final ImageView internalImage;
   private final FrameLayout internalImageContainer;
+  @Nullable
+  private ValueAnimator transitionAnimator;
 
   public TransitionImageAnimator(@Nullable ImageView externalImage,
       @NonNull ImageView internalImage, @NonNull FrameLayout internalImageContainer) {
@@ -68,56 +78,196 @@ public final class TransitionImageAnimator {
 
   private void doOpenTransition(int[] containerPadding, Runnable onTransitionEnd) {
     isAnimating = true;
-    prepareTransitionLayout();
-    View internalRoot = getInternalRoot();
-    internalRoot.post(() -> {
-      //ain't nothing but a kludge to prevent blinking when transition is starting
+    //the only layout change: the image takes its place in the viewer right away and is moved
+    //to the external view by its transform until the animation brings it back
+    Views.makeViewMatchParent(internalImageContainer);
+    Views.makeViewMatchParent(internalImage);
+    Views.applyMargin(getInternalRoot(),
+        containerPadding[0], containerPadding[1],
+        containerPadding[2], containerPadding[3]
+    );
 
+    runAfterLayout(() -> {
+      //ain't nothing but a kludge to prevent blinking when transition is starting
       ImageView externalImage = this.externalImage;
       if (externalImage != null) {
         externalImage
             .postDelayed(() -> externalImage.setVisibility(View.INVISIBLE), 50L);
       }
 
-      TransitionManager.beginDelayedTransition(getInternalRoot(), createTransition(() -> {
+      startTransition(() -> {
         if (!isClosing) {
           isAnimating = false;
           onTransitionEnd.run();
         }
-      }));
-      Views.makeViewMatchParent(internalImageContainer);
-      Views.makeViewMatchParent(internalImage);
-      Views.applyMargin(internalRoot,
-          containerPadding[0], containerPadding[1],
-          containerPadding[2], containerPadding[3]
-      );
-      internalImageContainer.requestLayout();
+      });
     });
   }
 
   private void doCloseTransition(Runnable onTransitionEnd) {
     isAnimating = true;
     isClosing = true;
-    TransitionManager.beginDelayedTransition(getInternalRoot(),
-        createTransition(() -> handleCloseTransitionEnd(onTransitionEnd)));
-    prepareTransitionLayout();
-    internalImageContainer.requestLayout();
+    ValueAnimator openAnimator = transitionAnimator;
+    if (openAnimator != null) {
+      //the open transition is stopped, so it doesn't set the transform too
+      transitionAnimator = null;
+      openAnimator.cancel();
+      internalImageContainer.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+    resetRootTranslation();
+    runAfterLayout(() -> startTransition(() -> handleCloseTransitionEnd(onTransitionEnd)));
   }
 
-  private void prepareTransitionLayout() {
+  /**
+   * Runs the action before the next frame is drawn, once the pending layout is done.
+   */
+  private void runAfterLayout(@NonNull Runnable action) {
+    ViewTreeObserver observer = internalImageContainer.getViewTreeObserver();
+    observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+      @Override public boolean onPreDraw() {
+        internalImageContainer.getViewTreeObserver().removeOnPreDrawListener(this);
+        action.run();
+        return true;
+      }
+    });
+    internalImageContainer.invalidate();
+  }
+
+  /**
+   * Animates the container between its place in the viewer and the external view. Both places
+   * are computed once: the image displayed by the container is scaled to the one displayed by
+   * the external view, and the container is clipped to the visible part of the external view.
+   * The place in the viewer is the one without the translation of the root, which is animated
+   * back from the swipe at the same time, so the root translation is followed on every frame.
+   */
+  private void startTransition(@NonNull Runnable onTransitionEnd) {
     ImageView externalImage = this.externalImage;
-    if (externalImage != null) {
-      if (Views.isRectVisible(externalImage)) {
-        Rect rect = Views.getLocalVisibleRect(externalImage);
-        Views.requestNewSize(internalImage, externalImage.getWidth(), externalImage.getHeight());
-        Views.applyMargin(internalImage, -rect.left, -rect.top, null, null);
-        rect = Views.getGlobalVisibleRect(externalImage);
-        Views.requestNewSize(internalImageContainer, rect.width(), rect.height());
-        Views.applyMargin(internalImageContainer, rect.left, rect.top, rect.right, rect.bottom);
+    if (externalImage == null) {
+      onTransitionEnd.run();
+      return;
+    }
+
+    View root = getInternalRoot();
+    int[] location = new int[2];
+    internalImageContainer.getLocationInWindow(location);
+    float containerLeft = location[0] - internalImageContainer.getTranslationX()
+        - root.getTranslationX();
+    float containerTop = location[1] - internalImageContainer.getTranslationY()
+        - root.getTranslationY();
+    RectF containerRect = new RectF(containerLeft, containerTop,
+        containerLeft + internalImageContainer.getWidth(),
+        containerTop + internalImageContainer.getHeight());
+    Rect visibleRect = Views.getGlobalVisibleRect(externalImage);
+    Rect localRect = Views.getLocalVisibleRect(externalImage);
+    RectF externalRect = new RectF(visibleRect.left - localRect.left,
+        visibleRect.top - localRect.top,
+        visibleRect.left - localRect.left + externalImage.getWidth(),
+        visibleRect.top - localRect.top + externalImage.getHeight());
+    if (containerRect.isEmpty() || externalRect.isEmpty()) {
+      onTransitionEnd.run();
+      return;
+    }
+
+    //the images are fitted into both of the views, so they are matched by their content
+    Drawable drawable = internalImage.getDrawable();
+    RectF startContent = fitContent(drawable, externalRect);
+    RectF endContent = fitContent(drawable, containerRect);
+    float scaleX = startContent.width() / endContent.width();
+    float scaleY = startContent.height() / endContent.height();
+    float translationX = startContent.left - containerRect.left
+        - (endContent.left - containerRect.left) * scaleX;
+    float translationY = startContent.top - containerRect.top
+        - (endContent.top - containerRect.top) * scaleY;
+    RectF startClip = new RectF(visibleRect);
+
+    internalImageContainer.setPivotX(0f);
+    internalImageContainer.setPivotY(0f);
+    internalImageContainer.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+    ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+    animator.setDuration(getTransitionDuration());
+    animator.setInterpolator(new DecelerateInterpolator());
+    RectF clip = new RectF();
+    Rect localClip = new Rect();
+    animator.addUpdateListener(animation -> {
+      //fraction of the way from the viewer to the external view
+      float fraction = isClosing ? animation.getAnimatedFraction()
+          : 1f - animation.getAnimatedFraction();
+      float currentScaleX = 1f + (scaleX - 1f) * fraction;
+      float currentScaleY = 1f + (scaleY - 1f) * fraction;
+      float currentTranslationX = translationX * fraction;
+      float currentTranslationY = translationY * fraction;
+      float rootTranslationY = root.getTranslationY();
+      internalImageContainer.setScaleX(currentScaleX);
+      internalImageContainer.setScaleY(currentScaleY);
+      internalImageContainer.setTranslationX(currentTranslationX);
+      internalImageContainer.setTranslationY(currentTranslationY);
+
+      if (VERSION.SDK_INT >= 18) {
+        float currentContainerTop = containerRect.top + rootTranslationY;
+        clip.set(interpolate(containerRect.left, startClip.left, fraction),
+            interpolate(currentContainerTop, startClip.top, fraction),
+            interpolate(containerRect.right, startClip.right, fraction),
+            interpolate(containerRect.bottom + rootTranslationY, startClip.bottom, fraction));
+        //the clip is set in the coordinates of the container before its transform
+        localClip.set(
+            (int) ((clip.left - containerRect.left - currentTranslationX) / currentScaleX),
+            (int) ((clip.top - currentContainerTop - currentTranslationY) / currentScaleY),
+            (int) Math.ceil((clip.right - containerRect.left - currentTranslationX)
+                / currentScaleX),
+            (int) Math.ceil((clip.bottom - currentContainerTop - currentTranslationY)
+                / currentScaleY));
+        internalImageContainer.setClipBounds(localClip);
       }
+    });
+    animator.addListener(new AnimatorListenerAdapter() {
+      @Override public void onAnimationEnd(Animator animation) {
+        if (transitionAnimator != animation) {
+          //cancelled by the close transition, which has cleaned up already
+          return;
+        }
+        transitionAnimator = null;
+        internalImageContainer.setLayerType(View.LAYER_TYPE_NONE, null);
+        if (!isClosing) {
+          resetTransform();
+        }
+        onTransitionEnd.run();
+      }
+    });
+    transitionAnimator = animator;
+    animator.start();
+  }
+
+  private void resetTransform() {
+    internalImageContainer.setScaleX(1f);
+    internalImageContainer.setScaleY(1f);
+    internalImageContainer.setTranslationX(0f);
+    internalImageContainer.setTranslationY(0f);
+    if (VERSION.SDK_INT >= 18) {
+      internalImageContainer.setClipBounds(null);
+    }
+  }
 
-      resetRootTranslation();
+  /**
+   * @return the bounds of the drawable fitted into the rect, or the rect itself if the drawable
+   * has no intrinsic size
+   */
+  @NonNull
+  private static RectF fitContent(@Nullable Drawable drawable, @NonNull RectF rect) {
+    int width = drawable != null ? drawable.getIntrinsicWidth() : -1;
+    int height = drawable != null ? drawable.getIntrinsicHeight() : -1;
+    if (width <= 0 || height <= 0) {
+      return new RectF(rect);
     }
+
+    float scale = Math.min(rect.width() / width, rect.height() / height);
+    float left = rect.centerX() - width * scale / 2f;
+    float top = rect.centerY() - height * scale / 2f;
+    return new RectF(left, top, left + width * scale, top + height * scale);
+  }
+
+  private static float interpolate(float from, float to, float fraction) {
+    return from + (to - from) * fraction;
   }
 
   private void handleCloseTransitionEnd(Runnable onTransitionEnd) {
@@ -135,17 +285,4 @@ public final class TransitionImageAnimator {
         .setDuration(getTransitionDuration())
         .start();
   }
-
-  private Transition createTransition(Runnable onTransitionEnd) {
-    return new AutoTransition()
-        .setDuration(getTransitionDuration())
-        .setInterpolator(new DecelerateInterpolator())
-        .addListener(new TransitionListenerAdapter() {
-          @Override public void onTransitionEnd(@NonNull Transition transition) {
-            if (onTransitionEnd != null) {
-              onTransitionEnd.run();
-            }
-          }
-        });
-  }
 }